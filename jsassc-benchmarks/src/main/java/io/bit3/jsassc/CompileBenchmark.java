@@ -0,0 +1,123 @@
+package io.bit3.jsassc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import io.bit3.jsass.CompilationException;
+import io.bit3.jsass.Compiler;
+import io.bit3.jsass.Options;
+import io.bit3.jsass.Output;
+import io.bit3.jsass.OutputStyle;
+
+import io.bit3.jsassc.JsassC.CompileFileRunner;
+import io.bit3.jsassc.JsassC.CompileStringRunner;
+
+/**
+ * JMH benchmarks of the jsassc compile runners and the raw jsass compiler.
+ *
+ * Every benchmark returns the compilation output, so the JIT can not eliminate the compilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class CompileBenchmark {
+  /**
+   * The output style.
+   */
+  @Param({"NESTED", "EXPANDED", "COMPACT", "COMPRESSED"})
+  public OutputStyle outputStyle;
+
+  /**
+   * Generate a source map.
+   */
+  @Param({"false", "true"})
+  public boolean sourceMap;
+
+  /**
+   * The compiler instance lifecycle of the runners.
+   */
+  @Param({"per-thread"})
+  public String compilerScope;
+
+  /**
+   * The raw jsass compiler.
+   */
+  private Compiler compiler;
+
+  /**
+   * The raw jsass compiler options.
+   */
+  private Options options;
+
+  /**
+   * The file compile runner.
+   */
+  private CompileFileRunner fileRunner;
+
+  /**
+   * The string compile runner.
+   */
+  private CompileStringRunner stringRunner;
+
+  @Setup(Level.Trial)
+  public void setUp(CorpusState corpus) throws URISyntaxException {
+    compiler = new Compiler();
+    options = createOptions(corpus);
+
+    CompilerProvider provider = CompilerScope
+        .fromString(compilerScope)
+        .createProvider(() -> createOptions(corpus), 1);
+
+    fileRunner = new CompileFileRunner(provider, corpus.getIn(), corpus.getOut());
+    stringRunner = new CompileStringRunner(provider, corpus.getSource());
+  }
+
+  /**
+   * Create the compiler options of the benchmark parameters.
+   */
+  private Options createOptions(CorpusState corpus) {
+    Options options = new Options();
+    options.setOutputStyle(outputStyle);
+    options.setSourceMapFile(sourceMap ? corpus.getMap() : null);
+    options.getIncludePaths().add(corpus.getIncludePath());
+    return options;
+  }
+
+  @Benchmark
+  public Output compileFileRunner() {
+    fileRunner.run();
+    return fileRunner.getOutput();
+  }
+
+  @Benchmark
+  public Output compileStringRunner() {
+    stringRunner.run();
+    return stringRunner.getOutput();
+  }
+
+  @Benchmark
+  public Output compilerCompileFile(CorpusState corpus) throws CompilationException {
+    return compiler.compileFile(corpus.getIn(), corpus.getOut(), options);
+  }
+
+  @Benchmark
+  public Output compilerCompileString(CorpusState corpus) throws CompilationException {
+    return compiler.compileString(corpus.getSource(), corpus.getIn(), corpus.getOut(), options);
+  }
+}
@@ -0,0 +1,161 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+
+/**
+ * Input corpus fixture shared by all benchmarks.
+ *
+ * The corpus is either one of the generated corpora "small" and "large", or the path to an
+ * existing sass file (e.g. -p corpus=bower_components/foundation/scss/foundation.scss).
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+  /**
+   * The corpus name or path.
+   */
+  @Param({"small", "large"})
+  public String corpus;
+
+  /**
+   * The temporary directory of a generated corpus.
+   */
+  private File directory;
+
+  /**
+   * The entrypoint file.
+   */
+  private File entrypoint;
+
+  /**
+   * The entrypoint source.
+   */
+  private String source;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    switch (corpus) {
+      case "small":
+        directory = generate(1, 50);
+        entrypoint = new File(directory, "main.scss");
+        break;
+
+      case "large":
+        directory = generate(20, 200);
+        entrypoint = new File(directory, "main.scss");
+        break;
+
+      default:
+        entrypoint = new File(corpus).getAbsoluteFile();
+
+        if (!entrypoint.isFile()) {
+          throw new IllegalArgumentException("Corpus " + corpus + " is neither generated nor a file");
+        }
+    }
+
+    try (
+        InputStream is = new FileInputStream(entrypoint);
+    ) {
+      source = IOUtils.toString(is, "UTF-8");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (null != directory) {
+      FileUtils.deleteDirectory(directory);
+    }
+  }
+
+  /**
+   * Return the directory containing the entrypoint, used as include path for string compilation.
+   */
+  public File getIncludePath() {
+    return entrypoint.getParentFile();
+  }
+
+  /**
+   * Return the entrypoint uri.
+   */
+  public URI getIn() {
+    return entrypoint.toURI();
+  }
+
+  /**
+   * Return the output uri.
+   */
+  public URI getOut() {
+    return new File(entrypoint.getPath().replaceAll("\\.s[ac]ss$", "") + ".css").toURI();
+  }
+
+  /**
+   * Return the source map uri.
+   */
+  public URI getMap() {
+    return new File(entrypoint.getPath().replaceAll("\\.s[ac]ss$", "") + ".css.map").toURI();
+  }
+
+  /**
+   * Return the entrypoint source.
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Generate a corpus of partials, each containing nested rules, variables and mixins.
+   */
+  private static File generate(int partials, int rulesPerPartial) throws IOException {
+    File directory = Files.createTempDirectory("jsassc-corpus").toFile();
+    StringBuilder main = new StringBuilder();
+
+    main.append("$base-color: #336699;\n");
+    main.append("@mixin box($padding) { padding: $padding; margin: $padding / 2; }\n");
+
+    for (int i = 0; i < partials; i++) {
+      StringBuilder partial = new StringBuilder();
+
+      for (int j = 0; j < rulesPerPartial; j++) {
+        partial.append(String.format(".block-%d-%d {\n", i, j));
+        partial.append(String.format("  color: lighten($base-color, %d%%);\n", j % 50));
+        partial.append(String.format("  @include box(%dpx);\n", j % 16));
+        partial.append(String.format("  &:hover { color: darken($base-color, %d%%); }\n", j % 30));
+        partial.append(String.format("  .element-%d { width: percentage(%d / 100); }\n", j, j % 100));
+        partial.append("}\n");
+      }
+
+      write(new File(directory, String.format("_partial-%d.scss", i)), partial.toString());
+      main.append(String.format("@import \"partial-%d\";\n", i));
+    }
+
+    write(new File(directory, "main.scss"), main.toString());
+
+    return directory;
+  }
+
+  /**
+   * Write a string into a file.
+   */
+  private static void write(File file, String content) throws IOException {
+    try (
+        OutputStream os = new FileOutputStream(file);
+    ) {
+      IOUtils.write(content, os, "UTF-8");
+    }
+  }
+}
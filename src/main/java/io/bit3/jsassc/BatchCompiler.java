@@ -0,0 +1,455 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.bit3.jsass.CompilationException;
+import io.bit3.jsass.Compiler;
+import io.bit3.jsass.Options;
+import io.bit3.jsass.Output;
+
+/**
+ * Compiles all entrypoints of directory trees in parallel, within a single JVM.
+ *
+ * Every sass file not starting with an underscore is an entrypoint, partials are only compiled
+ * through the entrypoints importing them. The output mirrors the input tree below the output
+ * directory. Every worker thread reuses its own compiler, the options are created per entrypoint
+ * because of the entrypoint specific source map file. The worker threads are kept until shutdown,
+ * so repeated compilations reuse them.
+ */
+class BatchCompiler {
+  /**
+   * The characters making a path segment a glob pattern.
+   */
+  private static final Pattern GLOB_PATTERN = Pattern.compile("[*?\\[{]");
+
+  /**
+   * The output directory.
+   */
+  private final Path outputDirectory;
+
+  /**
+   * The directory receiving the depfiles, or null without depfiles.
+   */
+  private final Path depfileDirectory;
+
+  /**
+   * Whether the output gets compressed.
+   */
+  private final boolean compress;
+
+  /**
+   * Whether source maps get generated.
+   */
+  private final boolean sourceMap;
+
+  /**
+   * The include paths of the imports.
+   */
+  private final List<File> includePaths;
+
+  /**
+   * The import graph of the entrypoints, only accessed by the thread starting compilations.
+   */
+  private final ImportGraph graph;
+
+  /**
+   * The number of worker threads.
+   */
+  private final int threads;
+
+  /**
+   * The worker threads.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The compiler of each worker thread.
+   */
+  private final ThreadLocal<Compiler> compilers = ThreadLocal.withInitial(Compiler::new);
+
+  /**
+   * The compile cache, or null without cache.
+   */
+  private CompileCache cache;
+
+  BatchCompiler(
+      Path outputDirectory,
+      Path depfileDirectory,
+      boolean compress,
+      boolean sourceMap,
+      List<File> includePaths,
+      ImportGraph graph,
+      int threads
+  ) {
+    this.outputDirectory = outputDirectory;
+    this.depfileDirectory = depfileDirectory;
+    this.compress = compress;
+    this.sourceMap = sourceMap;
+    this.includePaths = includePaths;
+    this.graph = graph;
+    this.threads = threads;
+    this.executor = Executors.newFixedThreadPool(threads);
+  }
+
+  void setCache(CompileCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Find the entrypoints of the given directories, glob patterns or files, ordered by path.
+   *
+   * A directory is searched recursively and mirrored from the directory itself, a glob pattern
+   * from its leading segments without wildcards. A file is compiled even if it is a partial.
+   */
+  List<Entrypoint> find(List<String> inputs) throws IOException {
+    Map<Path, Entrypoint> entrypoints = new TreeMap<>();
+
+    for (String input : inputs) {
+      Path path = Paths.get(input);
+
+      if (Files.isRegularFile(path)) {
+        add(entrypoints, path.toAbsolutePath().getParent(), path);
+        continue;
+      }
+
+      Path base = globBase(path);
+      List<PathMatcher> matchers = new ArrayList<>();
+
+      if (!base.equals(path)) {
+        String glob = base.relativize(path).toString().replace('\\', '/');
+        matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+
+        // let **/ also match files directly in the base directory
+        if (glob.startsWith("**/")) {
+          matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3)));
+        }
+      }
+
+      if (!Files.isDirectory(base)) {
+        throw new IOException("No such input directory " + base);
+      }
+
+      try (
+          Stream<Path> files = Files.walk(base);
+      ) {
+        List<Path> matches = files
+            .filter(Files::isRegularFile)
+            .filter(BatchCompiler::isEntrypoint)
+            .filter(file -> matchers.isEmpty() || matchers.stream().anyMatch(m -> m.matches(base.relativize(file))))
+            .collect(Collectors.toList());
+
+        for (Path file : matches) {
+          add(entrypoints, base, file);
+        }
+      }
+    }
+
+    return new ArrayList<>(entrypoints.values());
+  }
+
+  private void add(Map<Path, Entrypoint> entrypoints, Path base, Path file) {
+    Path input = file.toAbsolutePath().normalize();
+    String relative = base.toAbsolutePath().normalize().relativize(input).toString();
+    String css = relative.replaceAll("\\.s[ac]ss$", "") + ".css";
+    Path output = outputDirectory.resolve(css).toAbsolutePath();
+    Path depfile = null == depfileDirectory ? null : depfileDirectory.resolve(css + ".d").toAbsolutePath();
+
+    entrypoints.putIfAbsent(
+        input,
+        new Entrypoint(input, output, sourceMap ? Paths.get(output + ".map") : null, depfile)
+    );
+  }
+
+  /**
+   * Return the directories the given inputs are searched in.
+   */
+  static List<Path> roots(List<String> inputs) {
+    List<Path> roots = new ArrayList<>();
+
+    for (String input : inputs) {
+      Path path = Paths.get(input);
+      Path root = Files.isRegularFile(path) ? path.toAbsolutePath().getParent() : globBase(path);
+
+      roots.add(root.toAbsolutePath().normalize());
+    }
+
+    return roots;
+  }
+
+  /**
+   * Return the entrypoints with missing outputs or outputs not newer than the entrypoint and all
+   * files it imports transitively.
+   */
+  List<Entrypoint> outdated(List<Entrypoint> entrypoints) throws IOException {
+    List<Entrypoint> outdated = new ArrayList<>();
+
+    for (Entrypoint entrypoint : entrypoints) {
+      graph.add(entrypoint.getInput());
+
+      List<Path> outputs = new ArrayList<>();
+      outputs.add(entrypoint.getOutput());
+
+      if (null != entrypoint.getSourceMap()) {
+        outputs.add(entrypoint.getSourceMap());
+      }
+
+      List<Path> inputs = new ArrayList<>(graph.dependencies(entrypoint.getInput()));
+      inputs.add(entrypoint.getInput());
+
+      if (lastModified(outputs, false) <= lastModified(inputs, true)) {
+        outdated.add(entrypoint);
+      }
+    }
+
+    return outdated;
+  }
+
+  /**
+   * Return the newest or oldest modification time of the files, a missing file counts as oldest.
+   */
+  private static long lastModified(List<Path> files, boolean newest) throws IOException {
+    long lastModified = newest ? Long.MIN_VALUE : Long.MAX_VALUE;
+
+    for (Path file : files) {
+      long modified = Files.isRegularFile(file) ? Files.getLastModifiedTime(file).toMillis() : Long.MIN_VALUE;
+      lastModified = newest ? Math.max(lastModified, modified) : Math.min(lastModified, modified);
+    }
+
+    return lastModified;
+  }
+
+  /**
+   * Compile the entrypoints on the worker threads and print the result of each.
+   *
+   * @return The number of failed entrypoints.
+   */
+  int compile(Collection<Entrypoint> entrypoints) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    int failed = 0;
+    List<Future<Boolean>> results = new ArrayList<>();
+
+    for (Entrypoint entrypoint : entrypoints) {
+      Collection<Path> dependencies = null;
+
+      if (null != entrypoint.getDepfile()) {
+        graph.add(entrypoint.getInput());
+        dependencies = graph.dependencies(entrypoint.getInput());
+      }
+
+      String key = null == cache
+          ? null
+          : cache.key(entrypoint.getInput(), entrypoint.getOutput(), entrypoint.getSourceMap(), createOptions(entrypoint));
+      Collection<Path> prerequisites = dependencies;
+      results.add(executor.submit(() -> compile(entrypoint, prerequisites, key)));
+    }
+
+    for (Future<Boolean> result : results) {
+      try {
+        if (!result.get()) {
+          failed++;
+        }
+      } catch (ExecutionException e) {
+        e.getCause().printStackTrace();
+        failed++;
+      }
+    }
+
+    System.out.println(
+        String.format(
+            "Finished %d entrypoints, %d failed, after %d milliseconds with %d threads",
+            entrypoints.size(),
+            failed,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            threads
+        )
+    );
+
+    return failed;
+  }
+
+  /**
+   * Stop the worker threads.
+   */
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Compile a single entrypoint and write its output.
+   *
+   * @param entrypoint   The entrypoint.
+   * @param dependencies The files imported by the entrypoint, or null without depfile.
+   * @param key          The cache key of the entrypoint, or null if not cached.
+   * @return Whether the compilation succeeded.
+   */
+  private boolean compile(Entrypoint entrypoint, Collection<Path> dependencies, String key) throws IOException {
+    if (null != key && cache.restore(key, entrypoint.getOutput(), entrypoint.getSourceMap())) {
+      writeDepfile(entrypoint, dependencies);
+      System.out.println(String.format("Restored %s to %s from cache", entrypoint.getInput(), entrypoint.getOutput()));
+      return true;
+    }
+
+    long start = System.nanoTime();
+    Output output;
+
+    try {
+      output = compilers.get().compileFile(
+          entrypoint.getInput().toUri(),
+          entrypoint.getOutput().toUri(),
+          createOptions(entrypoint)
+      );
+    } catch (CompilationException e) {
+      System.err.println(String.format("Compilation of %s failed", entrypoint.getInput()));
+      e.printStackTrace();
+      return false;
+    }
+
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    if (0 != output.getErrorStatus()) {
+      System.err.println(String.format("Compilation of %s failed after %d milliseconds", entrypoint.getInput(), millis));
+      System.err.println(output.getErrorMessage());
+      System.err.println(output.getErrorJson());
+      return false;
+    }
+
+    FileUtils.writeStringToFile(entrypoint.getOutput().toFile(), output.getCss(), StandardCharsets.UTF_8);
+
+    if (null != entrypoint.getSourceMap()) {
+      FileUtils.writeStringToFile(entrypoint.getSourceMap().toFile(), output.getSourceMap(), StandardCharsets.UTF_8);
+    }
+
+    if (null != key) {
+      cache.store(key, entrypoint.getOutput(), entrypoint.getSourceMap());
+    }
+
+    writeDepfile(entrypoint, dependencies);
+
+    System.out.println(
+        String.format(
+            "Compiled %s to %s after %d milliseconds",
+            entrypoint.getInput(),
+            entrypoint.getOutput(),
+            millis
+        )
+    );
+
+    return true;
+  }
+
+  private Options createOptions(Entrypoint entrypoint) {
+    URI map = null == entrypoint.getSourceMap() ? null : entrypoint.getSourceMap().toUri();
+
+    return JsassC.createOptions(compress, map, includePaths);
+  }
+
+  private static void writeDepfile(Entrypoint entrypoint, Collection<Path> dependencies) throws IOException {
+    if (null != entrypoint.getDepfile()) {
+      Depfile.write(entrypoint.getDepfile(), entrypoint.getOutput(), entrypoint.getInput(), dependencies);
+    }
+  }
+
+  /**
+   * Return whether a file is a sass file, but not a partial.
+   */
+  static boolean isEntrypoint(Path file) {
+    return isSass(file) && !file.getFileName().toString().startsWith("_");
+  }
+
+  /**
+   * Return whether a file is a sass file.
+   */
+  static boolean isSass(Path file) {
+    String name = file.getFileName().toString();
+
+    return name.endsWith(".scss") || name.endsWith(".sass");
+  }
+
+  /**
+   * Return the leading segments of a path up to the first glob pattern segment.
+   */
+  private static Path globBase(Path path) {
+    Path base = null == path.getRoot() ? Paths.get("") : path.getRoot();
+
+    for (Path segment : path) {
+      if (GLOB_PATTERN.matcher(segment.toString()).find()) {
+        break;
+      }
+
+      base = base.resolve(segment);
+    }
+
+    return base;
+  }
+
+  /**
+   * An entrypoint together with its output files.
+   */
+  static class Entrypoint {
+    /**
+     * The absolute input file.
+     */
+    private final Path input;
+
+    /**
+     * The absolute css output file.
+     */
+    private final Path output;
+
+    /**
+     * The absolute source map output file, or null without source map.
+     */
+    private final Path sourceMap;
+
+    /**
+     * The absolute depfile, or null without depfile.
+     */
+    private final Path depfile;
+
+    Entrypoint(Path input, Path output, Path sourceMap, Path depfile) {
+      this.input = input;
+      this.output = output;
+      this.sourceMap = sourceMap;
+      this.depfile = depfile;
+    }
+
+    Path getInput() {
+      return input;
+    }
+
+    Path getOutput() {
+      return output;
+    }
+
+    Path getSourceMap() {
+      return sourceMap;
+    }
+
+    Path getDepfile() {
+      return depfile;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stored json benchmark report, used as baseline for regression checks.
+ */
+class BenchBaseline {
+  /**
+   * The baseline report file.
+   */
+  private final File file;
+
+  /**
+   * The results of the baseline report.
+   */
+  private final List<Object> results;
+
+  private BenchBaseline(File file, List<Object> results) {
+    this.file = file;
+    this.results = results;
+  }
+
+  /**
+   * Load a json benchmark report written with --report-file.
+   *
+   * Every result and every sample of the report must be a json object.
+   */
+  @SuppressWarnings("unchecked")
+  static BenchBaseline load(File file) throws IOException {
+    Object document;
+
+    try {
+      document = JsonParser.parse(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("The baseline " + file + " is not a json benchmark report", e);
+    }
+
+    if (!(document instanceof Map) || !(((Map<String, Object>) document).get("results") instanceof List)) {
+      throw new IOException("The baseline " + file + " is not a json benchmark report");
+    }
+
+    List<Object> results = (List<Object>) ((Map<String, Object>) document).get("results");
+
+    if (results.isEmpty()) {
+      throw new IOException("The baseline " + file + " contains no results");
+    }
+
+    for (Object result : results) {
+      if (!(result instanceof Map)) {
+        throw new IOException("The baseline " + file + " is not a json benchmark report");
+      }
+
+      Object samples = ((Map<String, Object>) result).get("samples");
+
+      if (samples instanceof List && !((List<Object>) samples).stream().allMatch(sample -> sample instanceof Map)) {
+        throw new IOException("The baseline " + file + " is not a json benchmark report");
+      }
+    }
+
+    return new BenchBaseline(file, results);
+  }
+
+  /**
+   * Compare a benchmark result against the baseline result with the same number of threads, or
+   * the first baseline result, and print the comparison.
+   *
+   * A regression is detected, if the median is significantly higher (one-sided Mann-Whitney U
+   * test) and exceeds the threshold, or if the lower confidence bound of the current p99 exceeds
+   * the upper confidence bound of the baseline p99 and the p99 exceeds the threshold.
+   *
+   * @param threshold The tolerated latency increase in percent.
+   * @param alpha     The significance level.
+   * @return Whether a regression was detected.
+   */
+  @SuppressWarnings("unchecked")
+  boolean compare(BenchResult current, double threshold, double alpha) {
+    Map<String, Object> baseline = (Map<String, Object>) results.get(0);
+
+    for (Object result : results) {
+      Object threads = ((Map<String, Object>) result).get("threads");
+
+      if (threads instanceof Number && ((Number) threads).intValue() == current.getThreads()) {
+        baseline = (Map<String, Object>) result;
+        break;
+      }
+    }
+
+    long[] currentSamples = current
+        .getSamples()
+        .stream()
+        .mapToLong(BenchSample::getNanos)
+        .toArray();
+    BenchComparison comparison = new BenchComparison(samples(baseline), currentSamples);
+
+    if (!comparison.isComparable()) {
+      System.err.println("The baseline or the current run has no raw samples to compare");
+      return false;
+    }
+
+    boolean medianRegression = comparison.getChange(50) > threshold && comparison.getTest().pGreater < alpha;
+    boolean p99Regression = comparison.getChange(99) > threshold && comparison.isHigher(99);
+
+    System.out.println(String.format("Baseline comparison against %s", file));
+    comparison.print("baseline", "current");
+    System.out.println(
+        String.format(
+            "  regression threshold %.2f%% at significance level %.3f",
+            threshold,
+            alpha
+        )
+    );
+
+    if (medianRegression || p99Regression) {
+      System.out.println(
+          String.format(
+              "  REGRESSION of the %s",
+              medianRegression && p99Regression ? "median and p99" : medianRegression ? "median" : "p99"
+          )
+      );
+    } else {
+      System.out.println("  no regression");
+    }
+
+    return medianRegression || p99Regression;
+  }
+
+  /**
+   * Return the raw sample times of a baseline result.
+   */
+  @SuppressWarnings("unchecked")
+  private static long[] samples(Map<String, Object> result) {
+    Object samples = result.get("samples");
+
+    if (!(samples instanceof List)) {
+      return new long[0];
+    }
+
+    return ((List<Object>) samples)
+        .stream()
+        .map(sample -> ((Map<String, Object>) sample).get("nanos"))
+        .filter(value -> value instanceof Number)
+        .mapToLong(value -> ((Number) value).longValue())
+        .toArray();
+  }
+}
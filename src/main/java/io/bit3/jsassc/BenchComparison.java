@@ -0,0 +1,115 @@
+package io.bit3.jsassc;
+
+import java.util.Arrays;
+
+/**
+ * Statistical comparison of two sets of benchmark samples.
+ */
+class BenchComparison {
+  /**
+   * The percentiles compared.
+   */
+  private static final double[] PERCENTILES = {50, 90, 99};
+
+  /**
+   * The sorted first sample set.
+   */
+  private final long[] first;
+
+  /**
+   * The sorted second sample set.
+   */
+  private final long[] second;
+
+  /**
+   * The Mann-Whitney U test of both sets.
+   */
+  private final BenchStatistics.MannWhitney test;
+
+  BenchComparison(long[] first, long[] second) {
+    this.first = first.clone();
+    this.second = second.clone();
+    Arrays.sort(this.first);
+    Arrays.sort(this.second);
+    this.test = BenchStatistics.mannWhitney(this.first, this.second);
+  }
+
+  /**
+   * Return whether both sets contain samples.
+   */
+  boolean isComparable() {
+    return 0 < first.length && 0 < second.length;
+  }
+
+  BenchStatistics.MannWhitney getTest() {
+    return test;
+  }
+
+  /**
+   * Return the change of a percentile from the first to the second set in percent.
+   */
+  double getChange(double percentile) {
+    long from = BenchStatistics.percentile(first, percentile);
+    long to = BenchStatistics.percentile(second, percentile);
+
+    return 0 == from ? 0 : (to - from) * 100.0 / from;
+  }
+
+  /**
+   * Return whether the confidence intervals of a percentile separate, with the second set higher.
+   */
+  boolean isHigher(double percentile) {
+    long[] firstInterval = BenchStatistics.percentileInterval(first, percentile, BenchStatistics.Z_95);
+    long[] secondInterval = BenchStatistics.percentileInterval(second, percentile, BenchStatistics.Z_95);
+
+    return secondInterval[0] > firstInterval[1];
+  }
+
+  /**
+   * Print the percentiles of both sets with their confidence intervals and the Mann-Whitney test.
+   */
+  void print(String firstLabel, String secondLabel) {
+    System.out.println(
+        String.format(
+            "  %-6s %12s %25s %12s %25s %9s",
+            "",
+            firstLabel + " ms",
+            "95% ci",
+            secondLabel + " ms",
+            "95% ci",
+            "change"
+        )
+    );
+
+    for (double percentile : PERCENTILES) {
+      long[] firstInterval = BenchStatistics.percentileInterval(first, percentile, BenchStatistics.Z_95);
+      long[] secondInterval = BenchStatistics.percentileInterval(second, percentile, BenchStatistics.Z_95);
+
+      System.out.println(
+          String.format(
+              "  %-6s %12.3f %25s %12.3f %25s %+8.2f%%",
+              "p" + (long) percentile,
+              BenchStatistics.percentile(first, percentile) / 1e6,
+              String.format("[%.3f, %.3f]", firstInterval[0] / 1e6, firstInterval[1] / 1e6),
+              BenchStatistics.percentile(second, percentile) / 1e6,
+              String.format("[%.3f, %.3f]", secondInterval[0] / 1e6, secondInterval[1] / 1e6),
+              getChange(percentile)
+          )
+      );
+    }
+
+    System.out.println(
+        String.format(
+            "  mann-whitney u %.0f, z %.3f, p %.4f two-sided / %.4f %s slower, P(%s > %s) %.3f",
+            test.u,
+            test.z,
+            test.pTwoSided,
+            test.pGreater,
+            secondLabel,
+            secondLabel,
+            firstLabel,
+            test.superiority
+        )
+    );
+  }
+}
@@ -0,0 +1,424 @@
+package io.bit3.jsassc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import io.bit3.jsass.Compiler;
+
+/**
+ * Writes machine-readable benchmark reports.
+ *
+ * Both formats contain the environment metadata, the benchmark options, the aggregated statistics
+ * and every raw sample of each benchmark result.
+ */
+class BenchReportWriter {
+  /**
+   * The percentiles written into the reports.
+   */
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  /**
+   * The benchmark options, as given on the command line.
+   */
+  private final Map<String, String> options;
+
+  /**
+   * The environment metadata.
+   */
+  private final Map<String, String> environment;
+
+  BenchReportWriter(Map<String, String> options) {
+    this.options = options;
+    this.environment = collectEnvironment();
+  }
+
+  /**
+   * Write the results in the given format, either "json" or "csv".
+   */
+  void write(String format, List<BenchResult> results, Writer writer) throws IOException {
+    PrintWriter out = new PrintWriter(writer);
+
+    switch (format) {
+      case "json":
+        writeJson(results, out);
+        break;
+
+      case "csv":
+        writeCsv(results, out);
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown report format " + format);
+    }
+
+    out.flush();
+
+    if (out.checkError()) {
+      throw new IOException("Failed to write the benchmark report");
+    }
+  }
+
+  /**
+   * Write the results as json document.
+   */
+  private void writeJson(List<BenchResult> results, PrintWriter out) {
+    out.println("{");
+    out.print("  \"environment\": ");
+    writeJsonMap(environment, out);
+    out.println(",");
+    out.print("  \"options\": ");
+    writeJsonMap(options, out);
+    out.println(",");
+    out.println("  \"results\": [");
+
+    for (int i = 0; i < results.size(); i++) {
+      BenchResult result = results.get(i);
+
+      out.println("    {");
+      out.println(String.format("      \"threads\": %d,", result.getThreads()));
+      out.println(String.format("      \"warmup\": %d,", result.getWarmup()));
+      if (null != result.getSteadyState()) {
+        out.println(
+            String.format(
+                "      \"steadyState\": {\"iterations\": %d, \"nanos\": %d, \"steady\": %s},",
+                result.getSteadyState().getIterations(),
+                result.getSteadyState().getNanos(),
+                result.getSteadyState().isSteady()
+            )
+        );
+      }
+      out.println(String.format("      \"iterations\": %d,", result.getIterations()));
+      out.println(String.format("      \"wallClockNanos\": %d,", result.getWallClockNanos()));
+      out.println(String.format("      \"throughput\": %s,", result.getThroughput()));
+      out.println(String.format("      \"targetRate\": %s,", result.getTargetRate()));
+      out.println(String.format("      \"executionTimeNanos\": %d,", result.getExecutionTimeNanos()));
+      out.println(String.format("      \"cpuTimeNanos\": %d,", result.getCpuTimeNanos()));
+      out.println(String.format("      \"latency\": %s,", jsonLatency(result.getHistogram())));
+      if (null != result.getServiceHistogram()) {
+        out.println(String.format("      \"service\": %s,", jsonLatency(result.getServiceHistogram())));
+      }
+      out.println(String.format("      \"acquire\": %s,", jsonLatency(result.getAcquireHistogram())));
+      out.println(String.format("      \"compileCpu\": %s,", jsonLatency(result.getCpuHistogram())));
+      out.println(String.format("      \"allocatedBytes\": %s,", jsonLatency(result.getAllocationHistogram())));
+      if (null != result.getGcCorrelation()) {
+        out.println(String.format("      \"gc\": %s,", jsonNumbers(result.getGcCorrelation().toMap())));
+      }
+      if (null != result.getForkStatistics()) {
+        out.println(String.format("      \"forks\": %s,", jsonNumbers(result.getForkStatistics().toMap())));
+      }
+      out.println("      \"workers\": [");
+
+      List<LatencyHistogram> workers = result.getThreadHistograms();
+      for (int j = 0; j < workers.size(); j++) {
+        out.println(
+            String.format(
+                "        {\"worker\": %d, \"latency\": %s}%s",
+                j + 1,
+                jsonLatency(workers.get(j)),
+                j + 1 < workers.size() ? "," : ""
+            )
+        );
+      }
+
+      out.println("      ],");
+      out.println("      \"samples\": [");
+
+      List<BenchSample> samples = result.getSamples();
+      long origin = origin(samples);
+      for (int j = 0; j < samples.size(); j++) {
+        BenchSample sample = samples.get(j);
+
+        out.println(
+            String.format(
+                "        {\"worker\": %d, \"iteration\": %d, \"variant\": %d, \"nanos\": %d, \"status\": %d, \"inputSize\": %d, \"cpuNanos\": %d, \"allocatedBytes\": %d, \"startNanos\": %d, \"acquireNanos\": %d, \"serviceNanos\": %d, \"gcNanos\": %d}%s",
+                sample.getWorker(),
+                sample.getIteration(),
+                sample.getVariant(),
+                sample.getNanos(),
+                sample.getStatus(),
+                sample.getInputSize(),
+                sample.getCpuNanos(),
+                sample.getAllocatedBytes(),
+                sample.getStartNanos() - origin,
+                sample.getAcquireNanos(),
+                sample.getServiceNanos(),
+                sample.getGcNanos(),
+                j + 1 < samples.size() ? "," : ""
+            )
+        );
+      }
+
+      out.println("      ]");
+      out.println(i + 1 < results.size() ? "    }," : "    }");
+    }
+
+    out.println("  ]");
+    out.println("}");
+  }
+
+  /**
+   * Write a string map as json object.
+   */
+  private static void writeJsonMap(Map<String, String> map, PrintWriter out) {
+    out.println("{");
+
+    int i = 0;
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      i++;
+      out.println(
+          String.format(
+              "    %s: %s%s",
+              jsonString(entry.getKey()),
+              jsonString(entry.getValue()),
+              i < map.size() ? "," : ""
+          )
+      );
+    }
+
+    out.print("  }");
+  }
+
+  /**
+   * Format a map of numbers as single line json object.
+   */
+  private static String jsonNumbers(Map<String, ? extends Number> map) {
+    return map
+        .entrySet()
+        .stream()
+        .map(entry -> String.format("%s: %s", jsonString(entry.getKey()), entry.getValue()))
+        .collect(Collectors.joining(", ", "{", "}"));
+  }
+
+  /**
+   * Return the start of the earliest sample, the sample start times are reported relative to it.
+   */
+  private static long origin(List<BenchSample> samples) {
+    return samples
+        .stream()
+        .mapToLong(BenchSample::getStartNanos)
+        .min()
+        .orElse(0);
+  }
+
+  /**
+   * Format the statistics of a latency histogram as json object.
+   */
+  private static String jsonLatency(LatencyHistogram histogram) {
+    StringBuilder json = new StringBuilder();
+
+    json.append(String.format("{\"count\": %d", histogram.getTotalCount()));
+    json.append(String.format(", \"mean\": %s", histogram.getMean()));
+    json.append(String.format(", \"min\": %d", histogram.getMin()));
+
+    for (double percentile : PERCENTILES) {
+      json.append(
+          String.format(
+              ", \"%s\": %d",
+              percentileName(percentile),
+              histogram.getValueAtPercentile(percentile)
+          )
+      );
+    }
+
+    json.append(String.format(", \"max\": %d}", histogram.getMax()));
+
+    return json.toString();
+  }
+
+  /**
+   * Quote a string as json string.
+   */
+  private static String jsonString(String value) {
+    StringBuilder json = new StringBuilder("\"");
+
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+
+        case '\\':
+          json.append("\\\\");
+          break;
+
+        case '\n':
+          json.append("\\n");
+          break;
+
+        case '\r':
+          json.append("\\r");
+          break;
+
+        case '\t':
+          json.append("\\t");
+          break;
+
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+
+    return json.append('"').toString();
+  }
+
+  /**
+   * Write the results as csv table of raw samples.
+   *
+   * The metadata and the aggregated statistics are written as leading comment lines.
+   */
+  private void writeCsv(List<BenchResult> results, PrintWriter out) {
+    for (Map.Entry<String, String> entry : environment.entrySet()) {
+      out.println(String.format("# environment %s=%s", entry.getKey(), entry.getValue()));
+    }
+
+    for (Map.Entry<String, String> entry : options.entrySet()) {
+      out.println(String.format("# option %s=%s", entry.getKey(), entry.getValue()));
+    }
+
+    for (BenchResult result : results) {
+      LatencyHistogram histogram = result.getHistogram();
+      StringBuilder line = new StringBuilder();
+
+      line.append(String.format("# result threads=%d", result.getThreads()));
+      line.append(String.format(" warmup=%d", result.getWarmup()));
+
+      if (null != result.getSteadyState()) {
+        line.append(String.format(" steadyState.iterations=%d", result.getSteadyState().getIterations()));
+        line.append(String.format(" steadyState.nanos=%d", result.getSteadyState().getNanos()));
+        line.append(String.format(" steadyState.steady=%s", result.getSteadyState().isSteady()));
+      }
+
+      line.append(String.format(" iterations=%d", result.getIterations()));
+      line.append(String.format(" wallClockNanos=%d", result.getWallClockNanos()));
+      line.append(String.format(" throughput=%s", result.getThroughput()));
+      line.append(String.format(" targetRate=%s", result.getTargetRate()));
+      line.append(String.format(" cpuTimeNanos=%d", result.getCpuTimeNanos()));
+      line.append(String.format(" mean=%s", histogram.getMean()));
+      line.append(String.format(" min=%d", histogram.getMin()));
+
+      for (double percentile : PERCENTILES) {
+        line.append(
+            String.format(
+                " %s=%d",
+                percentileName(percentile),
+                histogram.getValueAtPercentile(percentile)
+            )
+        );
+      }
+
+      line.append(String.format(" max=%d", histogram.getMax()));
+      line.append(String.format(" compileCpuMean=%s", result.getCpuHistogram().getMean()));
+      line.append(String.format(" compileCpuP99=%d", result.getCpuHistogram().getValueAtPercentile(99)));
+      line.append(String.format(" allocatedBytesMean=%s", result.getAllocationHistogram().getMean()));
+      line.append(String.format(" allocatedBytesTotal=%d", result.getAllocationHistogram().getTotalValue()));
+
+      if (null != result.getGcCorrelation()) {
+        for (Map.Entry<String, Long> entry : result.getGcCorrelation().toMap().entrySet()) {
+          line.append(String.format(" gc.%s=%d", entry.getKey(), entry.getValue()));
+        }
+      }
+
+      if (null != result.getForkStatistics()) {
+        for (Map.Entry<String, Double> entry : result.getForkStatistics().toMap().entrySet()) {
+          line.append(String.format(" forks.%s=%s", entry.getKey(), entry.getValue()));
+        }
+      }
+
+      out.println(line);
+    }
+
+    out.println("threads,worker,iteration,variant,nanos,status,input_size,cpu_nanos,allocated_bytes,start_nanos,acquire_nanos,service_nanos,gc_nanos");
+
+    for (BenchResult result : results) {
+      long origin = origin(result.getSamples());
+
+      for (BenchSample sample : result.getSamples()) {
+        out.println(
+            String.format(
+                "%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d",
+                result.getThreads(),
+                sample.getWorker(),
+                sample.getIteration(),
+                sample.getVariant(),
+                sample.getNanos(),
+                sample.getStatus(),
+                sample.getInputSize(),
+                sample.getCpuNanos(),
+                sample.getAllocatedBytes(),
+                sample.getStartNanos() - origin,
+                sample.getAcquireNanos(),
+                sample.getServiceNanos(),
+                sample.getGcNanos()
+            )
+        );
+      }
+    }
+  }
+
+  /**
+   * Return the report name of a percentile, e.g. p99 or p999.
+   */
+  private static String percentileName(double percentile) {
+    return "p" + (percentile == Math.rint(percentile)
+        ? String.valueOf((long) percentile)
+        : String.valueOf(percentile).replace(".", ""));
+  }
+
+  /**
+   * Collect the environment metadata.
+   */
+  private static Map<String, String> collectEnvironment() {
+    Map<String, String> environment = new LinkedHashMap<>();
+
+    environment.put("timestamp", Instant.now().toString());
+    environment.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"));
+    environment.put("javaVersion", System.getProperty("java.version"));
+    environment.put("javaVendor", System.getProperty("java.vendor"));
+    environment.put(
+        "os",
+        System.getProperty("os.name") + " " + System.getProperty("os.version") + " " + System.getProperty("os.arch")
+    );
+    environment.put("cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+    environment.put("maxHeap", String.valueOf(Runtime.getRuntime().maxMemory()));
+    environment.put("jsassVersion", jsassVersion());
+
+    return environment;
+  }
+
+  /**
+   * Detect the version of the jsass library on the class path.
+   */
+  static String jsassVersion() {
+    Package jsassPackage = Compiler.class.getPackage();
+
+    if (null != jsassPackage && null != jsassPackage.getImplementationVersion()) {
+      return jsassPackage.getImplementationVersion();
+    }
+
+    try (
+        InputStream is = Compiler.class.getResourceAsStream("/META-INF/maven/io.bit3/jsass/pom.properties");
+    ) {
+      if (null != is) {
+        Properties properties = new Properties();
+        properties.load(is);
+        return properties.getProperty("version", "unknown");
+      }
+    } catch (IOException e) {
+      // fall through, the version is unknown
+    }
+
+    return "unknown";
+  }
+}
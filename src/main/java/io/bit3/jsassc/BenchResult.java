@@ -0,0 +1,219 @@
+package io.bit3.jsassc;
+
+import java.util.List;
+
+/**
+ * The measured result of a single benchmark run.
+ */
+class BenchResult {
+  /**
+   * The number of threads.
+   */
+  private final int threads;
+
+  /**
+   * The number of discarded warmup compilations per thread.
+   */
+  private final int warmup;
+
+  /**
+   * The wall-clock time of the measurement phase.
+   */
+  private final long wallClockNanos;
+
+  /**
+   * The summed compile time over all threads.
+   */
+  private final long executionTimeNanos;
+
+  /**
+   * The aggregate cpu time over all threads, or -1 if not supported.
+   */
+  private final long cpuTimeNanos;
+
+  /**
+   * The latency histograms of each worker thread.
+   */
+  private final List<LatencyHistogram> threadHistograms;
+
+  /**
+   * The latency histogram of the whole run.
+   */
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  /**
+   * The compiler acquisition time histogram of the whole run.
+   */
+  private final LatencyHistogram acquireHistogram;
+
+  /**
+   * The raw samples ordered by iteration, empty if not recorded.
+   */
+  private final List<BenchSample> samples;
+
+  /**
+   * The open-loop target rate in compilations per second, or 0 for closed-loop results.
+   */
+  private double targetRate;
+
+  /**
+   * The open-loop compile time histogram measured from the actual start, or null for closed-loop
+   * results whose latency already is the compile time.
+   */
+  private LatencyHistogram serviceHistogram;
+
+  /**
+   * The cpu time histogram of the single compilations, empty if not supported.
+   */
+  private LatencyHistogram cpuHistogram = new LatencyHistogram();
+
+  /**
+   * The allocated bytes histogram of the single compilations, empty if not supported.
+   */
+  private LatencyHistogram allocationHistogram = new LatencyHistogram();
+
+  /**
+   * The garbage collection correlation, or null if not monitored.
+   */
+  private GcMonitor.GcCorrelation gcCorrelation;
+
+  /**
+   * The detector that ended the warmup, or null for a fixed warmup.
+   */
+  private SteadyStateDetector steadyState;
+
+  /**
+   * The variance between the forks this result was combined from, or null if not forked.
+   */
+  private ForkedBench.ForkStatistics forkStatistics;
+
+  BenchResult(
+      int threads,
+      int warmup,
+      long wallClockNanos,
+      long executionTimeNanos,
+      long cpuTimeNanos,
+      List<LatencyHistogram> threadHistograms,
+      LatencyHistogram acquireHistogram,
+      List<BenchSample> samples
+  ) {
+    this.threads = threads;
+    this.warmup = warmup;
+    this.wallClockNanos = wallClockNanos;
+    this.executionTimeNanos = executionTimeNanos;
+    this.cpuTimeNanos = cpuTimeNanos;
+    this.threadHistograms = threadHistograms;
+    this.acquireHistogram = acquireHistogram;
+    this.samples = samples;
+
+    for (LatencyHistogram threadHistogram : threadHistograms) {
+      histogram.add(threadHistogram);
+    }
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  int getWarmup() {
+    return warmup;
+  }
+
+  long getWallClockNanos() {
+    return wallClockNanos;
+  }
+
+  long getExecutionTimeNanos() {
+    return executionTimeNanos;
+  }
+
+  long getCpuTimeNanos() {
+    return cpuTimeNanos;
+  }
+
+  List<LatencyHistogram> getThreadHistograms() {
+    return threadHistograms;
+  }
+
+  LatencyHistogram getHistogram() {
+    return histogram;
+  }
+
+  LatencyHistogram getAcquireHistogram() {
+    return acquireHistogram;
+  }
+
+  List<BenchSample> getSamples() {
+    return samples;
+  }
+
+  double getTargetRate() {
+    return targetRate;
+  }
+
+  void setTargetRate(double targetRate) {
+    this.targetRate = targetRate;
+  }
+
+  LatencyHistogram getServiceHistogram() {
+    return serviceHistogram;
+  }
+
+  void setServiceHistogram(LatencyHistogram serviceHistogram) {
+    this.serviceHistogram = serviceHistogram;
+  }
+
+  LatencyHistogram getCpuHistogram() {
+    return cpuHistogram;
+  }
+
+  void setCpuHistogram(LatencyHistogram cpuHistogram) {
+    this.cpuHistogram = cpuHistogram;
+  }
+
+  LatencyHistogram getAllocationHistogram() {
+    return allocationHistogram;
+  }
+
+  void setAllocationHistogram(LatencyHistogram allocationHistogram) {
+    this.allocationHistogram = allocationHistogram;
+  }
+
+  GcMonitor.GcCorrelation getGcCorrelation() {
+    return gcCorrelation;
+  }
+
+  void setGcCorrelation(GcMonitor.GcCorrelation gcCorrelation) {
+    this.gcCorrelation = gcCorrelation;
+  }
+
+  SteadyStateDetector getSteadyState() {
+    return steadyState;
+  }
+
+  void setSteadyState(SteadyStateDetector steadyState) {
+    this.steadyState = steadyState;
+  }
+
+  ForkedBench.ForkStatistics getForkStatistics() {
+    return forkStatistics;
+  }
+
+  void setForkStatistics(ForkedBench.ForkStatistics forkStatistics) {
+    this.forkStatistics = forkStatistics;
+  }
+
+  /**
+   * Return the number of measured compilations.
+   */
+  long getIterations() {
+    return histogram.getTotalCount();
+  }
+
+  /**
+   * Return the number of compilations per wall-clock second.
+   */
+  double getThroughput() {
+    return getIterations() * 1e9 / Math.max(1, wallClockNanos);
+  }
+}
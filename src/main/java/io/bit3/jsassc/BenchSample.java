@@ -0,0 +1,144 @@
+package io.bit3.jsassc;
+
+/**
+ * A single measured benchmark compilation.
+ */
+class BenchSample {
+  /**
+   * The worker that executed the compilation, starting with 1.
+   */
+  private final int worker;
+
+  /**
+   * The iteration index of the compilation, starting with 0.
+   */
+  private final int iteration;
+
+  /**
+   * The benchmark variant of the compilation, 0 for A and 1 for B.
+   */
+  private final int variant;
+
+  /**
+   * The compilation execution time.
+   */
+  private final long nanos;
+
+  /**
+   * The compilation error status, 0 on success or -1 if the compiler threw an exception.
+   */
+  private final int status;
+
+  /**
+   * The input size in bytes.
+   */
+  private final long inputSize;
+
+  /**
+   * The cpu time of the compilation, or -1 if not supported.
+   */
+  private final long cpuNanos;
+
+  /**
+   * The bytes allocated on the java heap by the compilation, or -1 if not supported.
+   */
+  private final long allocatedBytes;
+
+  /**
+   * The System.nanoTime() the compilation started at, the intended start for open-loop samples.
+   */
+  private final long startNanos;
+
+  /**
+   * The compiler acquisition time of the compilation.
+   */
+  private final long acquireNanos;
+
+  /**
+   * The compilation execution time without the queueing delay, equal to the nanos in closed-loop.
+   */
+  private final long serviceNanos;
+
+  /**
+   * The garbage collection pause time overlapping the compilation, or -1 if not correlated.
+   */
+  private long gcNanos = -1;
+
+  BenchSample(
+      int worker,
+      int iteration,
+      int variant,
+      long nanos,
+      int status,
+      long inputSize,
+      long cpuNanos,
+      long allocatedBytes,
+      long startNanos,
+      long acquireNanos,
+      long serviceNanos
+  ) {
+    this.worker = worker;
+    this.iteration = iteration;
+    this.variant = variant;
+    this.nanos = nanos;
+    this.status = status;
+    this.inputSize = inputSize;
+    this.cpuNanos = cpuNanos;
+    this.allocatedBytes = allocatedBytes;
+    this.startNanos = startNanos;
+    this.acquireNanos = acquireNanos;
+    this.serviceNanos = serviceNanos;
+  }
+
+  int getWorker() {
+    return worker;
+  }
+
+  int getIteration() {
+    return iteration;
+  }
+
+  int getVariant() {
+    return variant;
+  }
+
+  long getNanos() {
+    return nanos;
+  }
+
+  int getStatus() {
+    return status;
+  }
+
+  long getInputSize() {
+    return inputSize;
+  }
+
+  long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  long getStartNanos() {
+    return startNanos;
+  }
+
+  long getAcquireNanos() {
+    return acquireNanos;
+  }
+
+  long getServiceNanos() {
+    return serviceNanos;
+  }
+
+  long getGcNanos() {
+    return gcNanos;
+  }
+
+  void setGcNanos(long gcNanos) {
+    this.gcNanos = gcNanos;
+  }
+}
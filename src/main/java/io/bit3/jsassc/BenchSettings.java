@@ -0,0 +1,110 @@
+package io.bit3.jsassc;
+
+/**
+ * The settings of a benchmark run, independent of the thread count.
+ */
+class BenchSettings {
+  /**
+   * The maximum number of measured compilations.
+   */
+  private int iterations = Integer.MAX_VALUE;
+
+  /**
+   * The measurement duration, or 0 for no time limit.
+   */
+  private long durationNanos;
+
+  /**
+   * The open-loop target rate in compilations per second, or 0 for closed-loop benchmarking.
+   */
+  private double rate;
+
+  /**
+   * The number of discarded warmup compilations per thread.
+   */
+  private int warmup;
+
+  /**
+   * Whether the warmup ends automatically once a steady state is detected.
+   */
+  private boolean autoWarmup;
+
+  /**
+   * The maximum number of automatic warmup compilations over all threads.
+   */
+  private int maxWarmup;
+
+  /**
+   * Whether the raw samples are recorded.
+   */
+  private boolean recordSamples;
+
+  /**
+   * Whether the progress is printed once per second instead of every compilation.
+   */
+  private boolean quiet;
+
+  int getIterations() {
+    return iterations;
+  }
+
+  void setIterations(int iterations) {
+    this.iterations = iterations;
+  }
+
+  long getDurationNanos() {
+    return durationNanos;
+  }
+
+  void setDurationNanos(long durationNanos) {
+    this.durationNanos = durationNanos;
+  }
+
+  double getRate() {
+    return rate;
+  }
+
+  void setRate(double rate) {
+    this.rate = rate;
+  }
+
+  int getWarmup() {
+    return warmup;
+  }
+
+  void setWarmup(int warmup) {
+    this.warmup = warmup;
+  }
+
+  boolean isAutoWarmup() {
+    return autoWarmup;
+  }
+
+  void setAutoWarmup(boolean autoWarmup) {
+    this.autoWarmup = autoWarmup;
+  }
+
+  int getMaxWarmup() {
+    return maxWarmup;
+  }
+
+  void setMaxWarmup(int maxWarmup) {
+    this.maxWarmup = maxWarmup;
+  }
+
+  boolean isRecordSamples() {
+    return recordSamples;
+  }
+
+  void setRecordSamples(boolean recordSamples) {
+    this.recordSamples = recordSamples;
+  }
+
+  boolean isQuiet() {
+    return quiet;
+  }
+
+  void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+}
@@ -0,0 +1,173 @@
+package io.bit3.jsassc;
+
+import java.util.Arrays;
+
+/**
+ * Statistical helpers used to compare benchmark samples.
+ */
+final class BenchStatistics {
+  /**
+   * The z value of a two-sided 95% confidence interval.
+   */
+  static final double Z_95 = 1.959963984540054;
+
+  private BenchStatistics() {
+  }
+
+  /**
+   * Result of a Mann-Whitney U test.
+   */
+  static class MannWhitney {
+    /**
+     * The U statistic of the second sample set.
+     */
+    final double u;
+
+    /**
+     * The normal approximated z score, positive if the second sample set tends to be larger.
+     */
+    final double z;
+
+    /**
+     * The one-sided p value of the hypothesis, that the second sample set tends to be larger.
+     */
+    final double pGreater;
+
+    /**
+     * The two-sided p value.
+     */
+    final double pTwoSided;
+
+    /**
+     * The probability that a random sample of the second set is larger than one of the first set.
+     */
+    final double superiority;
+
+    MannWhitney(double u, double z, double superiority) {
+      this.u = u;
+      this.z = z;
+      this.pGreater = 1 - normalCdf(z);
+      this.pTwoSided = Math.min(1, 2 * (1 - normalCdf(Math.abs(z))));
+      this.superiority = superiority;
+    }
+  }
+
+  /**
+   * Run a Mann-Whitney U test, using the normal approximation with tie correction.
+   */
+  static MannWhitney mannWhitney(long[] first, long[] second) {
+    int n1 = first.length;
+    int n2 = second.length;
+    int n = n1 + n2;
+
+    if (0 == n1 || 0 == n2) {
+      return new MannWhitney(0, 0, 0.5);
+    }
+
+    // merge both sets, the second element marks samples of the second set
+    long[][] merged = new long[n][];
+    for (int i = 0; i < n1; i++) {
+      merged[i] = new long[]{first[i], 0};
+    }
+    for (int i = 0; i < n2; i++) {
+      merged[n1 + i] = new long[]{second[i], 1};
+    }
+    Arrays.sort(merged, (a, b) -> Long.compare(a[0], b[0]));
+
+    double rankSum = 0;
+    double tieCorrection = 0;
+
+    for (int i = 0; i < n; ) {
+      int j = i;
+      while (j < n && merged[j][0] == merged[i][0]) {
+        j++;
+      }
+
+      double rank = (i + 1 + j) / 2.0;
+      int ties = j - i;
+
+      for (int k = i; k < j; k++) {
+        if (1 == merged[k][1]) {
+          rankSum += rank;
+        }
+      }
+
+      tieCorrection += (double) ties * ties * ties - ties;
+      i = j;
+    }
+
+    double u = rankSum - (double) n2 * (n2 + 1) / 2;
+    double mean = (double) n1 * n2 / 2;
+    double variance = (double) n1 * n2 / 12 * ((n + 1) - tieCorrection / ((double) n * (n - 1)));
+
+    if (variance <= 0) {
+      return new MannWhitney(u, 0, u / ((double) n1 * n2));
+    }
+
+    double difference = u - mean;
+    double continuity = 0 == difference ? 0 : Math.signum(difference) * 0.5;
+    double z = (difference - continuity) / Math.sqrt(variance);
+
+    return new MannWhitney(u, z, u / ((double) n1 * n2));
+  }
+
+  /**
+   * Return the value at the given percentile (0 - 100) of sorted samples, using the nearest rank.
+   */
+  static long percentile(long[] sorted, double percentile) {
+    if (0 == sorted.length) {
+      return 0;
+    }
+
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+  }
+
+  /**
+   * Calculate a distribution-free confidence interval of a percentile of sorted samples.
+   *
+   * The interval bounds are order statistics, their ranks are derived from the normal
+   * approximation of the binomial distribution.
+   *
+   * @return The lower and upper bound.
+   */
+  static long[] percentileInterval(long[] sorted, double percentile, double z) {
+    int n = sorted.length;
+
+    if (0 == n) {
+      return new long[]{0, 0};
+    }
+
+    double q = percentile / 100;
+    double spread = z * Math.sqrt(n * q * (1 - q));
+    int lower = (int) Math.floor(n * q - spread);
+    int upper = (int) Math.ceil(n * q + spread);
+
+    return new long[]{
+        sorted[Math.min(n, Math.max(1, lower)) - 1],
+        sorted[Math.min(n, Math.max(1, upper)) - 1]
+    };
+  }
+
+  /**
+   * Cumulative distribution function of the standard normal distribution.
+   */
+  static double normalCdf(double z) {
+    return 0.5 * (1 + erf(z / Math.sqrt(2)));
+  }
+
+  /**
+   * Error function approximation (Abramowitz and Stegun 7.1.26, max error 1.5e-7).
+   */
+  private static double erf(double x) {
+    double t = 1 / (1 + 0.3275911 * Math.abs(x));
+    double polynomial = t * (0.254829592
+        + t * (-0.284496736
+        + t * (1.421413741
+        + t * (-1.453152027
+        + t * 1.061405429))));
+    double y = 1 - polynomial * Math.exp(-x * x);
+
+    return x >= 0 ? y : -y;
+  }
+}
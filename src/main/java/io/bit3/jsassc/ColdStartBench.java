@@ -0,0 +1,164 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first css of fresh jsassc processes.
+ *
+ * Every run starts a new JVM compiling once, which reports its startup phases. The process spawn
+ * and the JVM boot are derived from the wall-clock times of the parent, the JVM start and the
+ * main entry, with millisecond resolution. The JVM shutdown is the remainder of the process time.
+ */
+class ColdStartBench {
+  /**
+   * The options that only apply to the parent process.
+   */
+  static final List<String> PARENT_OPTIONS = Arrays.asList("cold-start", "startup-report");
+
+  /**
+   * The phase durations of all runs, in phase order.
+   */
+  private final Map<String, LatencyHistogram> phases = new LinkedHashMap<>();
+
+  /**
+   * The process times of all runs.
+   */
+  private final LatencyHistogram total = new LatencyHistogram();
+
+  private ColdStartBench() {
+  }
+
+  /**
+   * Run the given number of fresh processes and print the startup breakdown.
+   *
+   * @param runs   The number of processes.
+   * @param args   The command line arguments of the processes, without the parent options.
+   * @param source The source passed to the stdin of the processes, or null.
+   */
+  static void run(int runs, List<String> args, String source) throws IOException, InterruptedException {
+    ColdStartBench bench = new ColdStartBench();
+
+    for (int run = 0; run < runs; run++) {
+      bench.runProcess(run, args, source);
+    }
+
+    bench.print();
+  }
+
+  private void runProcess(int run, List<String> args, String source) throws IOException, InterruptedException {
+    File report = File.createTempFile("jsassc-startup", ".json");
+
+    try {
+      List<String> processArgs = new ArrayList<>();
+      processArgs.add("--startup-report");
+      processArgs.add(report.getPath());
+      processArgs.addAll(args);
+
+      long spawnMillis = System.currentTimeMillis();
+      long spawnNanos = System.nanoTime();
+      int exitCode = ForkedBench.runJvm(processArgs, source, ProcessBuilder.Redirect.appendTo(nullFile()));
+      long processNanos = System.nanoTime() - spawnNanos;
+
+      if (0 != exitCode) {
+        throw new IOException(String.format("Cold start %d failed with exit code %d", run + 1, exitCode));
+      }
+
+      record(spawnMillis, processNanos, report);
+    } finally {
+      FileUtils.deleteQuietly(report);
+    }
+  }
+
+  /**
+   * Record the phases of a startup report.
+   */
+  @SuppressWarnings("unchecked")
+  private void record(long spawnMillis, long processNanos, File report) throws IOException {
+    Object document;
+
+    try {
+      document = JsonParser.parse(FileUtils.readFileToString(report, StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("The cold start process wrote no startup report", e);
+    }
+
+    if (!(document instanceof Map) || !(((Map<String, Object>) document).get("phases") instanceof List)) {
+      throw new IOException("The cold start process wrote no startup report");
+    }
+
+    Map<String, Object> startup = (Map<String, Object>) document;
+    long jvmStartMillis = ((Number) startup.get("jvmStartMillis")).longValue();
+    long mainMillis = ((Number) startup.get("mainMillis")).longValue();
+    long elapsed = TimeUnit.MILLISECONDS.toNanos(Math.max(0, mainMillis - spawnMillis));
+
+    record("process spawn", TimeUnit.MILLISECONDS.toNanos(Math.max(0, jvmStartMillis - spawnMillis)));
+    record("jvm boot", TimeUnit.MILLISECONDS.toNanos(Math.max(0, mainMillis - jvmStartMillis)));
+
+    for (Object value : (List<Object>) startup.get("phases")) {
+      Map<String, Object> phase = (Map<String, Object>) value;
+      long nanos = ((Number) phase.get("nanos")).longValue();
+
+      record((String) phase.get("phase"), nanos);
+      elapsed += nanos;
+    }
+
+    record("jvm shutdown", Math.max(0, processNanos - elapsed));
+    total.record(processNanos);
+  }
+
+  private void record(String phase, long nanos) {
+    phases.computeIfAbsent(phase, key -> new LatencyHistogram()).record(nanos);
+  }
+
+  private void print() {
+    System.out.println(String.format("Cold start breakdown over %d fresh processes", total.getTotalCount()));
+    System.out.println(
+        String.format(
+            "  %-20s %10s %10s %10s %10s %8s",
+            "",
+            "mean ms",
+            "p50 ms",
+            "min ms",
+            "max ms",
+            "share"
+        )
+    );
+
+    for (Map.Entry<String, LatencyHistogram> phase : phases.entrySet()) {
+      print(phase.getKey(), phase.getValue());
+    }
+
+    print("total", total);
+  }
+
+  private void print(String label, LatencyHistogram histogram) {
+    System.out.println(
+        String.format(
+            "  %-20s %10.3f %10.3f %10.3f %10.3f %7.1f%%",
+            label,
+            histogram.getMean() / 1e6,
+            histogram.getValueAtPercentile(50) / 1e6,
+            histogram.getMin() / 1e6,
+            histogram.getMax() / 1e6,
+            histogram.getTotalValue() * 100.0 / Math.max(1, total.getTotalValue())
+        )
+    );
+  }
+
+  /**
+   * Return the null device, to discard the output of the processes.
+   */
+  private static File nullFile() {
+    return new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+  }
+}
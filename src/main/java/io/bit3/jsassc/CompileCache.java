@@ -0,0 +1,207 @@
+package io.bit3.jsassc;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import io.bit3.jsass.Compiler;
+import io.bit3.jsass.Options;
+
+/**
+ * Content addressed on-disk cache of compiled css and source maps.
+ *
+ * The key is a SHA-256 hash over the paths and contents of the entrypoint and all files it imports
+ * transitively, the compiler options and the version of jsass. With a source map, the output paths
+ * are part of the key too, as they end up in the source map and the source map reference of the
+ * css. Paths below the working directory are hashed relative to it, so checkouts at different
+ * locations, like the workspaces of CI agents, share their entries. Entrypoints with imports the
+ * import graph can not resolve are never cached, as their dependencies are unknown. Entries are
+ * written into a temporary file first and moved into place, so concurrent compilations and
+ * processes never read partial entries.
+ */
+class CompileCache {
+  /**
+   * The version of the key layout, to invalidate old entries after changes.
+   */
+  private static final String FORMAT = "jsassc-cache-2";
+
+  /**
+   * The cache directory.
+   */
+  private final Path directory;
+
+  /**
+   * The import graph resolving the dependencies of the entrypoints.
+   */
+  private final ImportGraph graph;
+
+  /**
+   * The version of jsass.
+   */
+  private final String version;
+
+  CompileCache(Path directory, ImportGraph graph) throws IOException {
+    this.directory = directory;
+    this.graph = graph;
+    this.version = jsassVersion();
+  }
+
+  /**
+   * Calculate the cache key of an entrypoint, or return null if it can not be cached.
+   *
+   * Uses the import graph, so all keys must be calculated by the same thread.
+   *
+   * @param input     The entrypoint.
+   * @param output    The css file.
+   * @param sourceMap The source map file, or null without source map.
+   * @param options   The compiler options.
+   */
+  String key(Path input, Path output, Path sourceMap, Options options) throws IOException {
+    graph.add(input);
+
+    if (!graph.isComplete(input)) {
+      return null;
+    }
+
+    MessageDigest digest = createDigest();
+    update(digest, FORMAT);
+    update(digest, version);
+    update(digest, String.valueOf(options.getOutputStyle()));
+
+    if (null != sourceMap) {
+      update(digest, Depfile.relative(output).toString());
+      update(digest, Depfile.relative(sourceMap).toString());
+    }
+
+    for (File includePath : options.getIncludePaths()) {
+      update(digest, Depfile.relative(includePath.toPath()).toString());
+    }
+
+    update(digest, Depfile.relative(input).toString());
+    digest.update(Files.readAllBytes(input));
+
+    for (Path dependency : graph.dependencies(input)) {
+      update(digest, Depfile.relative(dependency).toString());
+      digest.update(Files.readAllBytes(dependency));
+    }
+
+    return hex(digest.digest());
+  }
+
+  /**
+   * Copy the cached css and source map of a key to the output files.
+   *
+   * @return Whether the cache contained the key.
+   */
+  boolean restore(String key, Path output, Path sourceMap) throws IOException {
+    Path cachedCss = entry(key, ".css");
+    Path cachedMap = entry(key, ".css.map");
+
+    if (!Files.isRegularFile(cachedCss) || null != sourceMap && !Files.isRegularFile(cachedMap)) {
+      return false;
+    }
+
+    copy(cachedCss, output);
+
+    if (null != sourceMap) {
+      copy(cachedMap, sourceMap);
+    }
+
+    return true;
+  }
+
+  /**
+   * Store the written css and source map of a compilation under a key.
+   */
+  void store(String key, Path output, Path sourceMap) throws IOException {
+    if (null != sourceMap) {
+      copy(sourceMap, entry(key, ".css.map"));
+    }
+
+    // the css comes last, as its presence marks a complete entry
+    copy(output, entry(key, ".css"));
+  }
+
+  private Path entry(String key, String extension) {
+    return directory.resolve(key.substring(0, 2)).resolve(key + extension);
+  }
+
+  /**
+   * Copy a file through a temporary file in the target directory, replacing the target atomically.
+   */
+  private static void copy(Path source, Path target) throws IOException {
+    Path parent = target.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+
+    Path temporary = Files.createTempFile(parent, ".jsassc", ".tmp");
+
+    try {
+      Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+
+      try {
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+
+    return hex.toString();
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Return the version of jsass and its bundled libsass, falling back to a hash of the jar
+   * containing jsass, if the version is unknown.
+   */
+  private static String jsassVersion() throws IOException {
+    String version = BenchReportWriter.jsassVersion();
+    CodeSource source = Compiler.class.getProtectionDomain().getCodeSource();
+
+    if (!"unknown".equals(version) || null == source) {
+      return version;
+    }
+
+    try {
+      Path jar = Paths.get(source.getLocation().toURI());
+
+      if (!Files.isRegularFile(jar)) {
+        return version;
+      }
+
+      return hex(createDigest().digest(Files.readAllBytes(jar)));
+    } catch (URISyntaxException e) {
+      return version;
+    }
+  }
+}
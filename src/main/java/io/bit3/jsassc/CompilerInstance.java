@@ -0,0 +1,38 @@
+package io.bit3.jsassc;
+
+import io.bit3.jsass.Compiler;
+import io.bit3.jsass.Options;
+
+/**
+ * A jsass compiler together with the options it compiles with.
+ */
+public class CompilerInstance {
+  /**
+   * The jsass compiler.
+   */
+  private final Compiler compiler;
+
+  /**
+   * The jsass compiler options.
+   */
+  private final Options options;
+
+  public CompilerInstance(Compiler compiler, Options options) {
+    this.compiler = compiler;
+    this.options = options;
+  }
+
+  /**
+   * Return the jsass compiler.
+   */
+  public Compiler getCompiler() {
+    return compiler;
+  }
+
+  /**
+   * Return the jsass compiler options.
+   */
+  public Options getOptions() {
+    return options;
+  }
+}
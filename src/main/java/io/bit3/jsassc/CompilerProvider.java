@@ -0,0 +1,140 @@
+package io.bit3.jsassc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.bit3.jsass.Compiler;
+import io.bit3.jsass.Options;
+
+/**
+ * Provides compiler instances for compilations.
+ *
+ * Every acquired instance must be released after the compilation, the provider decides whether
+ * the instance gets reused.
+ */
+public interface CompilerProvider {
+  /**
+   * Acquire a compiler instance.
+   */
+  CompilerInstance acquire();
+
+  /**
+   * Release a compiler instance acquired from this provider.
+   */
+  void release(CompilerInstance instance);
+
+  /**
+   * Provider creating a new compiler instance for every compilation.
+   */
+  class PerRunCompilerProvider implements CompilerProvider {
+    /**
+     * Factory creating the options of each new compiler instance.
+     */
+    private final Supplier<Options> optionsFactory;
+
+    public PerRunCompilerProvider(Supplier<Options> optionsFactory) {
+      this.optionsFactory = optionsFactory;
+    }
+
+    @Override
+    public CompilerInstance acquire() {
+      return new CompilerInstance(new Compiler(), optionsFactory.get());
+    }
+
+    @Override
+    public void release(CompilerInstance instance) {
+      // the instance is discarded
+    }
+  }
+
+  /**
+   * Provider reusing one compiler instance per thread.
+   */
+  class PerThreadCompilerProvider implements CompilerProvider {
+    /**
+     * The compiler instance of each thread.
+     */
+    private final ThreadLocal<CompilerInstance> instances;
+
+    public PerThreadCompilerProvider(Supplier<Options> optionsFactory) {
+      instances = ThreadLocal.withInitial(() -> new CompilerInstance(new Compiler(), optionsFactory.get()));
+    }
+
+    @Override
+    public CompilerInstance acquire() {
+      return instances.get();
+    }
+
+    @Override
+    public void release(CompilerInstance instance) {
+      // the instance stays bound to the thread
+    }
+  }
+
+  /**
+   * Provider reusing compiler instances from a bounded pool.
+   *
+   * New instances are created until the pool size is reached, afterwards acquiring blocks until
+   * another compilation releases its instance.
+   */
+  class PoolCompilerProvider implements CompilerProvider {
+    /**
+     * Factory creating the options of each new compiler instance.
+     */
+    private final Supplier<Options> optionsFactory;
+
+    /**
+     * The idle compiler instances.
+     */
+    private final BlockingQueue<CompilerInstance> idle;
+
+    /**
+     * The number of created compiler instances.
+     */
+    private final AtomicInteger created = new AtomicInteger();
+
+    /**
+     * The maximum number of compiler instances.
+     */
+    private final int size;
+
+    public PoolCompilerProvider(Supplier<Options> optionsFactory, int size) {
+      if (size < 1) {
+        throw new IllegalArgumentException("Pool size must be at least 1");
+      }
+
+      this.optionsFactory = optionsFactory;
+      this.idle = new ArrayBlockingQueue<>(size);
+      this.size = size;
+    }
+
+    @Override
+    public CompilerInstance acquire() {
+      CompilerInstance instance = idle.poll();
+
+      if (null != instance) {
+        return instance;
+      }
+
+      if (created.incrementAndGet() <= size) {
+        return new CompilerInstance(new Compiler(), optionsFactory.get());
+      }
+
+      created.decrementAndGet();
+
+      try {
+        return idle.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public void release(CompilerInstance instance) {
+      idle.offer(instance);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package io.bit3.jsassc;
+
+import java.util.function.Supplier;
+
+import io.bit3.jsass.Options;
+
+/**
+ * The lifecycle of compiler instances.
+ */
+public enum CompilerScope {
+  /**
+   * Create a new compiler instance for every compilation.
+   */
+  PER_RUN("per-run"),
+
+  /**
+   * Reuse one compiler instance per thread.
+   */
+  PER_THREAD("per-thread"),
+
+  /**
+   * Reuse compiler instances from a bounded pool.
+   */
+  POOL("pool");
+
+  /**
+   * The name used on the command line.
+   */
+  private final String name;
+
+  CompilerScope(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Create a compiler provider of this scope.
+   *
+   * @param optionsFactory Factory creating the options of each new compiler instance.
+   * @param poolSize       The maximum number of instances, only used by {@link #POOL}.
+   */
+  public CompilerProvider createProvider(Supplier<Options> optionsFactory, int poolSize) {
+    switch (this) {
+      case PER_THREAD:
+        return new CompilerProvider.PerThreadCompilerProvider(optionsFactory);
+
+      case POOL:
+        return new CompilerProvider.PoolCompilerProvider(optionsFactory, poolSize);
+
+      default:
+        return new CompilerProvider.PerRunCompilerProvider(optionsFactory);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  /**
+   * Return the scope with the given command line name.
+   */
+  public static CompilerScope fromString(String name) {
+    for (CompilerScope scope : values()) {
+      if (scope.name.equals(name)) {
+        return scope;
+      }
+    }
+
+    throw new IllegalArgumentException("Unknown compiler scope " + name);
+  }
+}
@@ -0,0 +1,66 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+
+/**
+ * Writes make depfiles, also understood by ninja.
+ *
+ * The depfile names the target with all its prerequisites, followed by an empty rule for every
+ * imported file, so make does not fail once an imported file gets deleted. Paths below the working
+ * directory are written relative to it, because ninja compares the target with the output of the
+ * build statement literally.
+ */
+class Depfile {
+  private Depfile() {
+  }
+
+  /**
+   * Write a depfile.
+   *
+   * @param file          The depfile.
+   * @param target        The compiled css file.
+   * @param input         The compiled sass file.
+   * @param prerequisites The files imported by the sass file transitively.
+   */
+  static void write(Path file, Path target, Path input, Collection<Path> prerequisites) throws IOException {
+    StringBuilder depfile = new StringBuilder();
+    depfile.append(escape(target)).append(": ").append(escape(input));
+
+    for (Path prerequisite : prerequisites) {
+      depfile.append(" \\\n  ").append(escape(prerequisite));
+    }
+
+    depfile.append('\n');
+
+    for (Path prerequisite : prerequisites) {
+      depfile.append('\n').append(escape(prerequisite)).append(":\n");
+    }
+
+    FileUtils.writeStringToFile(file.toFile(), depfile.toString(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Return a path relative to the working directory if it is below it, otherwise absolute.
+   */
+  static Path relative(Path path) {
+    Path directory = Paths.get("").toAbsolutePath();
+    Path absolute = path.toAbsolutePath().normalize();
+
+    return absolute.startsWith(directory) ? directory.relativize(absolute) : absolute;
+  }
+
+  private static String escape(Path path) {
+    return relative(path)
+        .toString()
+        .replace("\\", "/")
+        .replace("$", "$$")
+        .replace("#", "\\#")
+        .replace(" ", "\\ ");
+  }
+}
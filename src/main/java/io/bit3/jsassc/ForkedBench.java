@@ -0,0 +1,517 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the benchmark in fresh child JVMs and combines their results.
+ *
+ * Every fork runs the configured benchmark and writes a json report, which is read back with all
+ * raw samples. The results of the same benchmark step are combined over all forks, and the
+ * variance between the forks is reported next to it, as JIT decisions and the native library
+ * layout differ from JVM to JVM.
+ */
+class ForkedBench {
+  /**
+   * The benchmark options that only apply to the parent process.
+   */
+  static final List<String> PARENT_OPTIONS = Arrays.asList(
+      "forks",
+      "report-file",
+      "report-format",
+      "baseline",
+      "regression-threshold"
+  );
+
+  /**
+   * The prefixes of the JVM options that are not passed on to the children, as the children would
+   * compete for the same debug port or overwrite the same dump and log files.
+   */
+  private static final List<String> PARENT_JVM_OPTIONS = Arrays.asList(
+      "-agentlib:",
+      "-agentpath:",
+      "-javaagent:",
+      "-Xdebug",
+      "-Xrunjdwp",
+      "-Xloggc:",
+      "-XX:+HeapDumpOnOutOfMemoryError",
+      "-XX:HeapDumpPath=",
+      "-XX:ErrorFile="
+  );
+
+  private ForkedBench() {
+  }
+
+  /**
+   * Run the benchmark in the given number of forks and return the combined results.
+   *
+   * @param forks  The number of forks.
+   * @param args   The command line arguments of the forks, without the parent options.
+   * @param source The source passed to the stdin of the forks, or null.
+   */
+  static List<BenchResult> run(int forks, List<String> args, String source) throws IOException, InterruptedException {
+    List<List<BenchResult>> forkResults = new ArrayList<>();
+
+    for (int fork = 0; fork < forks; fork++) {
+      System.out.println(String.format("Fork %d of %d", fork + 1, forks));
+      forkResults.add(runFork(fork, args, source));
+    }
+
+    List<BenchResult> results = new ArrayList<>();
+
+    for (int step = 0; step < forkResults.get(0).size(); step++) {
+      List<BenchResult> stepResults = new ArrayList<>();
+
+      for (List<BenchResult> forkResult : forkResults) {
+        if (step >= forkResult.size()) {
+          throw new IOException("The forks reported a different number of results");
+        }
+
+        stepResults.add(forkResult.get(step));
+      }
+
+      BenchResult combined = combine(stepResults);
+      ForkStatistics statistics = new ForkStatistics(stepResults);
+      statistics.print(combined.getThreads());
+      combined.setForkStatistics(statistics);
+      results.add(combined);
+    }
+
+    return results;
+  }
+
+  /**
+   * Run a single fork and read its results.
+   */
+  private static List<BenchResult> runFork(int fork, List<String> args, String source)
+      throws IOException, InterruptedException {
+    File report = File.createTempFile("jsassc-fork", ".json");
+
+    try {
+      List<String> forkArgs = new ArrayList<>();
+      forkArgs.add("--report-file");
+      forkArgs.add(report.getPath());
+      forkArgs.add("--report-format");
+      forkArgs.add("json");
+      forkArgs.addAll(args);
+
+      int exitCode = runJvm(forkArgs, source, ProcessBuilder.Redirect.INHERIT);
+
+      if (0 != exitCode) {
+        throw new IOException(String.format("Fork %d failed with exit code %d", fork + 1, exitCode));
+      }
+
+      return readResults(fork, report);
+    } finally {
+      FileUtils.deleteQuietly(report);
+    }
+  }
+
+  /**
+   * Run jsassc in a fresh JVM, with the JVM options and class path of this process, except for
+   * agents, debuggers and dump files.
+   *
+   * @param args   The command line arguments.
+   * @param source The source passed to stdin, or null.
+   * @param output The redirect of stdout, stderr is inherited.
+   * @return The exit code.
+   */
+  static int runJvm(List<String> args, String source, ProcessBuilder.Redirect output)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+
+    for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      if (PARENT_JVM_OPTIONS.stream().noneMatch(argument::startsWith)) {
+        command.add(argument);
+      }
+    }
+
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(JsassC.class.getName());
+    command.addAll(args);
+
+    Process process = new ProcessBuilder(command)
+        .redirectOutput(output)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+
+    try (
+        OutputStream stdin = process.getOutputStream();
+    ) {
+      if (null != source) {
+        stdin.write(source.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    return process.waitFor();
+  }
+
+  /**
+   * Read the results of a fork report.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<BenchResult> readResults(int fork, File report) throws IOException {
+    Object document;
+
+    try {
+      document = JsonParser.parse(FileUtils.readFileToString(report, StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new IOException(String.format("Fork %d wrote no benchmark report", fork + 1), e);
+    }
+
+    if (!(document instanceof Map) || !(((Map<String, Object>) document).get("results") instanceof List)) {
+      throw new IOException(String.format("Fork %d wrote no benchmark report", fork + 1));
+    }
+
+    List<BenchResult> results = new ArrayList<>();
+
+    for (Object result : (List<Object>) ((Map<String, Object>) document).get("results")) {
+      results.add(readResult(fork, (Map<String, Object>) result));
+    }
+
+    return results;
+  }
+
+  /**
+   * Rebuild a benchmark result from its report, the worker numbers are continued over the forks.
+   */
+  @SuppressWarnings("unchecked")
+  private static BenchResult readResult(int fork, Map<String, Object> result) {
+    int threads = (int) number(result, "threads");
+    List<LatencyHistogram> histograms = new ArrayList<>();
+    List<BenchSample> samples = new ArrayList<>();
+    LatencyHistogram acquireHistogram = new LatencyHistogram();
+    LatencyHistogram serviceHistogram = result.containsKey("service") ? new LatencyHistogram() : null;
+    LatencyHistogram cpuHistogram = new LatencyHistogram();
+    LatencyHistogram allocationHistogram = new LatencyHistogram();
+
+    for (int i = 0; i < threads; i++) {
+      histograms.add(new LatencyHistogram());
+    }
+
+    for (Object value : (List<Object>) result.get("samples")) {
+      Map<String, Object> sample = (Map<String, Object>) value;
+      int worker = (int) number(sample, "worker");
+      BenchSample benchSample = new BenchSample(
+          fork * threads + worker,
+          (int) number(sample, "iteration"),
+          (int) number(sample, "variant"),
+          number(sample, "nanos"),
+          (int) number(sample, "status"),
+          number(sample, "inputSize"),
+          number(sample, "cpuNanos"),
+          number(sample, "allocatedBytes"),
+          number(sample, "startNanos"),
+          number(sample, "acquireNanos"),
+          number(sample, "serviceNanos")
+      );
+      benchSample.setGcNanos(number(sample, "gcNanos"));
+      samples.add(benchSample);
+
+      histograms.get(worker - 1).record(benchSample.getNanos());
+
+      if (-1 != benchSample.getAcquireNanos()) {
+        acquireHistogram.record(benchSample.getAcquireNanos());
+      }
+
+      if (null != serviceHistogram && -1 != benchSample.getServiceNanos()) {
+        serviceHistogram.record(benchSample.getServiceNanos());
+      }
+
+      if (-1 != benchSample.getCpuNanos()) {
+        cpuHistogram.record(benchSample.getCpuNanos());
+      }
+
+      if (-1 != benchSample.getAllocatedBytes()) {
+        allocationHistogram.record(benchSample.getAllocatedBytes());
+      }
+    }
+
+    BenchResult benchResult = new BenchResult(
+        threads,
+        (int) number(result, "warmup"),
+        number(result, "wallClockNanos"),
+        number(result, "executionTimeNanos"),
+        number(result, "cpuTimeNanos"),
+        histograms,
+        acquireHistogram,
+        samples
+    );
+    benchResult.setTargetRate(((Number) result.get("targetRate")).doubleValue());
+    benchResult.setServiceHistogram(serviceHistogram);
+    benchResult.setCpuHistogram(cpuHistogram);
+    benchResult.setAllocationHistogram(allocationHistogram);
+
+    if (result.get("gc") instanceof Map) {
+      Map<String, Object> gc = (Map<String, Object>) result.get("gc");
+      benchResult.setGcCorrelation(
+          new GcMonitor.GcCorrelation(
+              (int) number(gc, "pauses"),
+              number(gc, "pauseNanos"),
+              (int) number(gc, "compilations"),
+              (int) number(gc, "affected"),
+              number(gc, "slowNanos"),
+              (int) number(gc, "slow"),
+              (int) number(gc, "slowByGc"),
+              number(gc, "p99WithoutGcNanos")
+          )
+      );
+    }
+
+    return benchResult;
+  }
+
+  /**
+   * Return a numeric report value, -1 if missing.
+   */
+  private static long number(Map<String, Object> map, String key) {
+    Object value = map.get(key);
+
+    return value instanceof Number ? ((Number) value).longValue() : -1;
+  }
+
+  /**
+   * Combine the results of the same benchmark step of all forks.
+   *
+   * The wall-clock times are summed, so the combined throughput is the throughput over all forks.
+   * The garbage collection pauses of the forks are summed as well, as they do not overlap, and
+   * correlated again with the combined samples.
+   */
+  private static BenchResult combine(List<BenchResult> results) {
+    BenchResult first = results.get(0);
+    List<LatencyHistogram> histograms = new ArrayList<>();
+    List<BenchSample> samples = new ArrayList<>();
+    LatencyHistogram acquireHistogram = new LatencyHistogram();
+    LatencyHistogram serviceHistogram = null == first.getServiceHistogram() ? null : new LatencyHistogram();
+    LatencyHistogram cpuHistogram = new LatencyHistogram();
+    LatencyHistogram allocationHistogram = new LatencyHistogram();
+    long wallClockNanos = 0;
+    long executionTimeNanos = 0;
+    long cpuTimeNanos = 0;
+    int gcPauses = 0;
+    long gcPauseNanos = 0;
+
+    for (BenchResult result : results) {
+      histograms.addAll(result.getThreadHistograms());
+      samples.addAll(result.getSamples());
+      acquireHistogram.add(result.getAcquireHistogram());
+
+      if (null != serviceHistogram && null != result.getServiceHistogram()) {
+        serviceHistogram.add(result.getServiceHistogram());
+      }
+
+      if (null != result.getGcCorrelation()) {
+        gcPauses += result.getGcCorrelation().getPauses();
+        gcPauseNanos += result.getGcCorrelation().getPauseNanos();
+      }
+
+      cpuHistogram.add(result.getCpuHistogram());
+      allocationHistogram.add(result.getAllocationHistogram());
+      wallClockNanos += result.getWallClockNanos();
+      executionTimeNanos += result.getExecutionTimeNanos();
+      cpuTimeNanos = -1 == cpuTimeNanos || -1 == result.getCpuTimeNanos()
+          ? -1
+          : cpuTimeNanos + result.getCpuTimeNanos();
+    }
+
+    BenchResult combined = new BenchResult(
+        first.getThreads(),
+        first.getWarmup(),
+        wallClockNanos,
+        executionTimeNanos,
+        cpuTimeNanos,
+        histograms,
+        acquireHistogram,
+        samples
+    );
+    combined.setTargetRate(first.getTargetRate());
+    combined.setServiceHistogram(serviceHistogram);
+    combined.setCpuHistogram(cpuHistogram);
+    combined.setAllocationHistogram(allocationHistogram);
+
+    if (null != first.getGcCorrelation()) {
+      combined.setGcCorrelation(GcMonitor.summarize(combined, gcPauses, gcPauseNanos));
+    }
+
+    return combined;
+  }
+
+  /**
+   * The variance between the forks of a benchmark step.
+   */
+  static class ForkStatistics {
+    /**
+     * The throughput of each fork.
+     */
+    private final double[] throughputs;
+
+    /**
+     * The median latency of each fork.
+     */
+    private final double[] medians;
+
+    /**
+     * The p99 latency of each fork.
+     */
+    private final double[] p99s;
+
+    /**
+     * The share of the latency variance between the forks, the intraclass correlation.
+     */
+    private final double betweenForkShare;
+
+    ForkStatistics(List<BenchResult> results) {
+      int forks = results.size();
+
+      throughputs = new double[forks];
+      medians = new double[forks];
+      p99s = new double[forks];
+
+      for (int i = 0; i < forks; i++) {
+        BenchResult result = results.get(i);
+        throughputs[i] = result.getThroughput();
+        medians[i] = result.getHistogram().getValueAtPercentile(50);
+        p99s[i] = result.getHistogram().getValueAtPercentile(99);
+      }
+
+      betweenForkShare = intraclassCorrelation(results);
+    }
+
+    /**
+     * Estimate the share of the latency variance between the forks with a one-way analysis of
+     * variance over the raw samples, grouped by fork.
+     */
+    private static double intraclassCorrelation(List<BenchResult> results) {
+      int groups = results.size();
+      long total = 0;
+      double sum = 0;
+      double sumOfSquaredGroupSizes = 0;
+      double[] means = new double[groups];
+
+      for (int i = 0; i < groups; i++) {
+        List<BenchSample> samples = results.get(i).getSamples();
+        means[i] = samples.stream().mapToLong(BenchSample::getNanos).average().orElse(0);
+        total += samples.size();
+        sum += means[i] * samples.size();
+        sumOfSquaredGroupSizes += (double) samples.size() * samples.size();
+      }
+
+      if (groups < 2 || total <= groups) {
+        return 0;
+      }
+
+      double grandMean = sum / total;
+      double between = 0;
+      double within = 0;
+
+      for (int i = 0; i < groups; i++) {
+        List<BenchSample> samples = results.get(i).getSamples();
+        between += samples.size() * (means[i] - grandMean) * (means[i] - grandMean);
+
+        for (BenchSample sample : samples) {
+          within += (sample.getNanos() - means[i]) * (sample.getNanos() - means[i]);
+        }
+      }
+
+      double meanSquareBetween = between / (groups - 1);
+      double meanSquareWithin = within / (total - groups);
+      double groupSize = (total - sumOfSquaredGroupSizes / total) / (groups - 1);
+      double betweenVariance = Math.max(0, (meanSquareBetween - meanSquareWithin) / groupSize);
+
+      return 0 == betweenVariance + meanSquareWithin ? 0 : betweenVariance / (betweenVariance + meanSquareWithin);
+    }
+
+    /**
+     * Return the statistics as ordered map of report values.
+     */
+    Map<String, Double> toMap() {
+      Map<String, Double> map = new LinkedHashMap<>();
+
+      map.put("forks", (double) throughputs.length);
+      map.put("throughputMean", mean(throughputs));
+      map.put("throughputStdDev", standardDeviation(throughputs));
+      map.put("p50Mean", mean(medians));
+      map.put("p50StdDev", standardDeviation(medians));
+      map.put("p99Mean", mean(p99s));
+      map.put("p99StdDev", standardDeviation(p99s));
+      map.put("betweenForkShare", betweenForkShare);
+
+      return map;
+    }
+
+    private void print(int threads) {
+      System.out.println(String.format("Fork comparison with %d threads", threads));
+      System.out.println(String.format("  %-8s %12s %10s %10s", "fork", "comp/s", "p50 ms", "p99 ms"));
+
+      for (int i = 0; i < throughputs.length; i++) {
+        System.out.println(
+            String.format(
+                "  %-8d %12.2f %10.3f %10.3f",
+                i + 1,
+                throughputs[i],
+                medians[i] / 1e6,
+                p99s[i] / 1e6
+            )
+        );
+      }
+
+      System.out.println(
+          String.format(
+              "  %-8s %12.2f %10.3f %10.3f",
+              "mean",
+              mean(throughputs),
+              mean(medians) / 1e6,
+              mean(p99s) / 1e6
+          )
+      );
+      System.out.println(
+          String.format(
+              "  %-8s %11.1f%% %9.1f%% %9.1f%%",
+              "cv",
+              coefficientOfVariation(throughputs) * 100,
+              coefficientOfVariation(medians) * 100,
+              coefficientOfVariation(p99s) * 100
+          )
+      );
+      System.out.println(
+          String.format(
+              "  %.1f%% of the latency variance is between the forks (intraclass correlation)",
+              betweenForkShare * 100
+          )
+      );
+    }
+
+    private static double mean(double[] values) {
+      return Arrays.stream(values).average().orElse(0);
+    }
+
+    private static double standardDeviation(double[] values) {
+      if (values.length < 2) {
+        return 0;
+      }
+
+      double mean = mean(values);
+      double squares = Arrays.stream(values).map(value -> (value - mean) * (value - mean)).sum();
+
+      return Math.sqrt(squares / (values.length - 1));
+    }
+
+    private static double coefficientOfVariation(double[] values) {
+      double mean = mean(values);
+
+      return 0 == mean ? 0 : standardDeviation(values) / mean;
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package io.bit3.jsassc;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Collects the garbage collection pauses during a benchmark and attributes them to the
+ * compilations in flight.
+ *
+ * The pause times of the notifications have millisecond resolution and are relative to the JVM
+ * start, they are mapped onto System.nanoTime() once when the monitoring starts.
+ */
+class GcMonitor implements NotificationListener {
+  /**
+   * The pauses as System.nanoTime() start and end.
+   */
+  private final List<long[]> pauses = new ArrayList<>();
+
+  /**
+   * The collectors this monitor listens to.
+   */
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+  /**
+   * The System.nanoTime() of the JVM start.
+   */
+  private long jvmStartNanos;
+
+  /**
+   * Start listening to the garbage collection notifications.
+   */
+  void start() {
+    jvmStartNanos = System.nanoTime()
+        - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter) {
+        NotificationEmitter emitter = (NotificationEmitter) collector;
+        emitter.addNotificationListener(this, null, null);
+        emitters.add(emitter);
+      }
+    }
+
+    if (emitters.isEmpty()) {
+      System.err.println("The garbage collectors of this JVM do not support notifications");
+    }
+  }
+
+  /**
+   * Stop listening to the garbage collection notifications.
+   */
+  void stop() {
+    for (NotificationEmitter emitter : emitters) {
+      try {
+        emitter.removeNotificationListener(this);
+      } catch (ListenerNotFoundException e) {
+        // already removed
+      }
+    }
+
+    emitters.clear();
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+      return;
+    }
+
+    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+        (CompositeData) notification.getUserData()
+    );
+    String action = info.getGcAction().toLowerCase(Locale.ROOT);
+
+    // concurrent cycles, like those of ZGC and Shenandoah, run next to the application and do not
+    // pause it, while the pauses of concurrent collectors, like the remark and cleanup of the
+    // "G1 Concurrent GC", are reported as pauses
+    if (action.contains("cycle")) {
+      return;
+    }
+
+    GcInfo gcInfo = info.getGcInfo();
+    long start = jvmStartNanos + TimeUnit.MILLISECONDS.toNanos(gcInfo.getStartTime());
+    long end = start + TimeUnit.MILLISECONDS.toNanos(Math.max(gcInfo.getDuration(), 0));
+
+    synchronized (pauses) {
+      pauses.add(new long[]{start, end});
+    }
+  }
+
+  /**
+   * Attribute the pauses to the samples of a result, print the correlation and return it.
+   *
+   * A compilation slower than the p99 is slow because of garbage collection, if it would have
+   * been faster than the p99 without the pauses it overlapped, and slow because of compile work
+   * otherwise.
+   */
+  GcCorrelation correlate(BenchResult result) {
+    List<long[]> sortedPauses;
+
+    synchronized (pauses) {
+      sortedPauses = new ArrayList<>(pauses);
+    }
+
+    sortedPauses.sort(Comparator.comparingLong(pause -> pause[0]));
+
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+
+    for (BenchSample sample : result.getSamples()) {
+      long start = sample.getStartNanos();
+      long end = start + sample.getNanos();
+      long gcNanos = 0;
+
+      for (long[] pause : sortedPauses) {
+        if (pause[0] >= end) {
+          break;
+        }
+
+        gcNanos += Math.max(0, Math.min(end, pause[1]) - Math.max(start, pause[0]));
+      }
+
+      sample.setGcNanos(gcNanos);
+      first = Math.min(first, start);
+      last = Math.max(last, end);
+    }
+
+    int pauseCount = 0;
+    long pauseNanos = 0;
+
+    for (long[] pause : sortedPauses) {
+      if (pause[1] > first && pause[0] < last) {
+        pauseCount++;
+        pauseNanos += pause[1] - pause[0];
+      }
+    }
+
+    return summarize(result, pauseCount, pauseNanos);
+  }
+
+  /**
+   * Summarize the pause times already attributed to the samples of a result, print the
+   * correlation and return it.
+   *
+   * @param pauses     The number of pauses during the measurement.
+   * @param pauseNanos The summed pause time during the measurement.
+   */
+  static GcCorrelation summarize(BenchResult result, int pauses, long pauseNanos) {
+    List<BenchSample> samples = result.getSamples();
+    long threshold = result.getHistogram().getValueAtPercentile(99);
+    int affected = 0;
+    int slow = 0;
+    int slowByGc = 0;
+    LatencyHistogram withoutGc = new LatencyHistogram();
+
+    for (BenchSample sample : samples) {
+      long gcNanos = Math.max(0, sample.getGcNanos());
+
+      withoutGc.record(sample.getNanos() - gcNanos);
+
+      if (0 < gcNanos) {
+        affected++;
+      }
+
+      if (sample.getNanos() >= threshold) {
+        slow++;
+
+        if (sample.getNanos() - gcNanos < threshold) {
+          slowByGc++;
+        }
+      }
+    }
+
+    GcCorrelation correlation = new GcCorrelation(
+        pauses,
+        pauseNanos,
+        samples.size(),
+        affected,
+        threshold,
+        slow,
+        slowByGc,
+        withoutGc.getValueAtPercentile(99)
+    );
+    correlation.print(result.getThreads());
+
+    return correlation;
+  }
+
+  /**
+   * The garbage collection correlation of a benchmark result.
+   */
+  static class GcCorrelation {
+    /**
+     * The number of pauses during the measurement.
+     */
+    private final int pauses;
+
+    /**
+     * The summed pause time during the measurement.
+     */
+    private final long pauseNanos;
+
+    /**
+     * The number of correlated compilations.
+     */
+    private final int compilations;
+
+    /**
+     * The number of compilations overlapping a pause.
+     */
+    private final int affected;
+
+    /**
+     * The p99 latency, compilations at or above are slow.
+     */
+    private final long slowNanos;
+
+    /**
+     * The number of slow compilations.
+     */
+    private final int slow;
+
+    /**
+     * The number of slow compilations, that were fast without the overlapping pauses.
+     */
+    private final int slowByGc;
+
+    /**
+     * The p99 latency with the overlapping pauses subtracted.
+     */
+    private final long p99WithoutGcNanos;
+
+    GcCorrelation(
+        int pauses,
+        long pauseNanos,
+        int compilations,
+        int affected,
+        long slowNanos,
+        int slow,
+        int slowByGc,
+        long p99WithoutGcNanos
+    ) {
+      this.pauses = pauses;
+      this.pauseNanos = pauseNanos;
+      this.compilations = compilations;
+      this.affected = affected;
+      this.slowNanos = slowNanos;
+      this.slow = slow;
+      this.slowByGc = slowByGc;
+      this.p99WithoutGcNanos = p99WithoutGcNanos;
+    }
+
+    int getPauses() {
+      return pauses;
+    }
+
+    long getPauseNanos() {
+      return pauseNanos;
+    }
+
+    /**
+     * Return the correlation as ordered map of report values.
+     */
+    Map<String, Long> toMap() {
+      Map<String, Long> map = new LinkedHashMap<>();
+
+      map.put("pauses", (long) pauses);
+      map.put("pauseNanos", pauseNanos);
+      map.put("compilations", (long) compilations);
+      map.put("affected", (long) affected);
+      map.put("slowNanos", slowNanos);
+      map.put("slow", (long) slow);
+      map.put("slowByGc", (long) slowByGc);
+      map.put("slowByCompile", (long) (slow - slowByGc));
+      map.put("p99WithoutGcNanos", p99WithoutGcNanos);
+
+      return map;
+    }
+
+    private void print(int threads) {
+      System.out.println(String.format("Garbage collection correlation with %d threads", threads));
+      System.out.println(
+          String.format(
+              "  %d pauses / %.3f milliseconds paused during the measurement",
+              pauses,
+              pauseNanos / 1e6
+          )
+      );
+      System.out.println(
+          String.format(
+              "  %d of %d compilations overlapped a pause",
+              affected,
+              compilations
+          )
+      );
+      System.out.println(
+          String.format(
+              "  %d slow compilations of at least %.3f milliseconds (p99): %d slow because of gc, %d because of compile work",
+              slow,
+              slowNanos / 1e6,
+              slowByGc,
+              slow - slowByGc
+          )
+      );
+      System.out.println(
+          String.format(
+              "  p99 without gc pauses %.3f milliseconds",
+              p99WithoutGcNanos / 1e6
+          )
+      );
+    }
+  }
+}
@@ -0,0 +1,401 @@
+package io.bit3.jsassc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The @import dependency graph of sass files, resolved like libsass does.
+ *
+ * The scanner only looks for @import statements outside of comments and strings, it does not
+ * parse sass. The paths must be quoted, except in the indented syntax. An import is resolved
+ * against the directory of the importing file first, then against the working directory and the
+ * include paths, trying the partial and non-partial file names with each sass extension and the
+ * index files of a directory. Imports of plain css, urls and interpolated imports are ignored.
+ * The graph keeps the raw imports of every file, so created and deleted files only require
+ * resolving again instead of scanning.
+ *
+ * The graph is not thread safe.
+ */
+class ImportGraph {
+  /**
+   * The include paths, searched after the directory of the importing file.
+   */
+  private final List<Path> includePaths;
+
+  /**
+   * The raw imports of each scanned file.
+   */
+  private final Map<Path, List<String>> specs = new HashMap<>();
+
+  /**
+   * The resolved imports of each scanned file.
+   */
+  private final Map<Path, Set<Path>> imports = new HashMap<>();
+
+  /**
+   * The files importing each file.
+   */
+  private final Map<Path, Set<Path>> importers = new HashMap<>();
+
+  ImportGraph(List<Path> includePaths) {
+    this.includePaths = includePaths
+        .stream()
+        .map(path -> path.toAbsolutePath().normalize())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Scan a file and all files it imports transitively, unless they were scanned before or do not
+   * exist.
+   */
+  void add(Path file) throws IOException {
+    Deque<Path> queue = new ArrayDeque<>();
+    queue.add(normalize(file));
+
+    while (!queue.isEmpty()) {
+      Path next = queue.poll();
+
+      if (!specs.containsKey(next) && Files.isRegularFile(next)) {
+        scan(next);
+        queue.addAll(imports.get(next));
+      }
+    }
+  }
+
+  /**
+   * Update the graph after files changed, were created or deleted.
+   *
+   * Changed files are scanned again, deleted files lose their imports and all imports get resolved
+   * again if files appeared or disappeared, as they may resolve differently now.
+   */
+  void update(Collection<Path> files) throws IOException {
+    boolean resolve = false;
+
+    for (Path file : files) {
+      Path path = normalize(file);
+      boolean exists = Files.isRegularFile(path);
+
+      resolve |= exists != specs.containsKey(path);
+
+      if (exists && specs.containsKey(path)) {
+        scan(path);
+      } else if (!exists) {
+        remove(path);
+      }
+    }
+
+    if (resolve) {
+      for (Path file : new ArrayList<>(specs.keySet())) {
+        link(file, resolve(file, specs.get(file)));
+      }
+    }
+
+    // scan newly imported files
+    for (Path file : new ArrayList<>(importers.keySet())) {
+      if (!specs.containsKey(file) && Files.isRegularFile(file)) {
+        add(file);
+      }
+    }
+  }
+
+  /**
+   * Forget all files, e.g. after watch events were lost.
+   */
+  void clear() {
+    specs.clear();
+    imports.clear();
+    importers.clear();
+  }
+
+  /**
+   * Return the given files together with all files importing them transitively.
+   */
+  Set<Path> affected(Collection<Path> files) {
+    return closure(files, importers);
+  }
+
+  /**
+   * Return whether all imports of a file and the files it imports transitively were resolved.
+   *
+   * Interpolated imports can not be resolved without compiling, so their dependencies are never
+   * complete.
+   */
+  boolean isComplete(Path file) {
+    for (Path next : closure(Collections.singletonList(file), imports)) {
+      List<String> fileSpecs = specs.get(next);
+
+      if (null == fileSpecs) {
+        return false;
+      }
+
+      for (String spec : fileSpecs) {
+        if (!isPlainCss(spec) && null == resolve(next, spec)) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Return all files imported by a file transitively, without the file itself.
+   */
+  Set<Path> dependencies(Path file) {
+    Path path = normalize(file);
+    Set<Path> dependencies = closure(Collections.singletonList(path), imports);
+    dependencies.remove(path);
+    return dependencies;
+  }
+
+  private Set<Path> closure(Collection<Path> files, Map<Path, Set<Path>> edges) {
+    Set<Path> closure = new LinkedHashSet<>();
+    Deque<Path> queue = new ArrayDeque<>();
+
+    for (Path file : files) {
+      queue.add(normalize(file));
+    }
+
+    while (!queue.isEmpty()) {
+      Path next = queue.poll();
+
+      if (closure.add(next)) {
+        queue.addAll(edges.getOrDefault(next, Collections.emptySet()));
+      }
+    }
+
+    return closure;
+  }
+
+  /**
+   * Read the imports of a file and link them.
+   */
+  private void scan(Path file) throws IOException {
+    List<String> fileSpecs = parse(
+        new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+        file.getFileName().toString().endsWith(".sass")
+    );
+
+    specs.put(file, fileSpecs);
+    link(file, resolve(file, fileSpecs));
+  }
+
+  private void remove(Path file) {
+    specs.remove(file);
+    link(file, Collections.emptySet());
+    imports.remove(file);
+  }
+
+  /**
+   * Replace the resolved imports of a file.
+   */
+  private void link(Path file, Set<Path> resolved) {
+    for (Path previous : imports.getOrDefault(file, Collections.emptySet())) {
+      Set<Path> previousImporters = importers.get(previous);
+      previousImporters.remove(file);
+
+      if (previousImporters.isEmpty()) {
+        importers.remove(previous);
+      }
+    }
+
+    for (Path imported : resolved) {
+      importers.computeIfAbsent(imported, key -> new LinkedHashSet<>()).add(file);
+    }
+
+    imports.put(file, resolved);
+  }
+
+  private Set<Path> resolve(Path file, List<String> fileSpecs) {
+    Set<Path> resolved = new LinkedHashSet<>();
+
+    for (String spec : fileSpecs) {
+      Path imported = resolve(file, spec);
+
+      if (null != imported) {
+        resolved.add(imported);
+      }
+    }
+
+    return resolved;
+  }
+
+  /**
+   * Resolve an import of a file, or return null if it is no sass import or can not be found.
+   */
+  private Path resolve(Path file, String spec) {
+    if (isPlainCss(spec) || spec.contains("#{")) {
+      return null;
+    }
+
+    List<Path> bases = new ArrayList<>();
+    bases.add(file.getParent());
+    bases.add(Paths.get("").toAbsolutePath());
+    bases.addAll(includePaths);
+
+    for (Path base : bases) {
+      for (Path candidate : candidates(base.resolve(spec))) {
+        if (Files.isRegularFile(candidate)) {
+          return candidate.normalize();
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Return whether an import stays a plain css import, instead of importing a sass file.
+   */
+  private static boolean isPlainCss(String spec) {
+    return spec.endsWith(".css") || spec.matches("^([a-z]+:)?//.*");
+  }
+
+  /**
+   * Return the files an import path may refer to, in the order libsass tries them.
+   */
+  private static List<Path> candidates(Path path) {
+    Path directory = path.getParent();
+    String name = path.getFileName().toString();
+    List<Path> candidates = new ArrayList<>();
+
+    if (name.endsWith(".scss") || name.endsWith(".sass")) {
+      candidates.add(directory.resolve("_" + name));
+      candidates.add(path);
+      return candidates;
+    }
+
+    for (String prefix : new String[]{"_", ""}) {
+      candidates.add(directory.resolve(prefix + name + ".scss"));
+      candidates.add(directory.resolve(prefix + name + ".sass"));
+    }
+
+    for (String prefix : new String[]{"_", ""}) {
+      candidates.add(path.resolve(prefix + "index.scss"));
+      candidates.add(path.resolve(prefix + "index.sass"));
+    }
+
+    return candidates;
+  }
+
+  /**
+   * Return the @import paths of a sass source, skipping comments and strings.
+   *
+   * @param source   The sass source.
+   * @param indented Whether the source uses the indented syntax, allowing unquoted paths.
+   */
+  static List<String> parse(String source, boolean indented) {
+    List<String> specs = new ArrayList<>();
+    int length = source.length();
+    int i = 0;
+
+    while (i < length) {
+      char c = source.charAt(i);
+
+      if (source.startsWith("/*", i)) {
+        int end = source.indexOf("*/", i + 2);
+        i = -1 == end ? length : end + 2;
+      } else if (source.startsWith("//", i)) {
+        int end = source.indexOf('\n', i);
+        i = -1 == end ? length : end + 1;
+      } else if ('"' == c || '\'' == c) {
+        i = skipString(source, i);
+      } else if (source.startsWith("url(", i)) {
+        int end = source.indexOf(')', i);
+        i = -1 == end ? length : end + 1;
+      } else if (source.startsWith("@import", i)
+          && (i + 7 == length || !Character.isLetterOrDigit(source.charAt(i + 7)) && '-' != source.charAt(i + 7))) {
+        i = parseImport(source, i + 7, indented, specs);
+      } else {
+        i++;
+      }
+    }
+
+    return specs;
+  }
+
+  /**
+   * Parse the comma separated paths of an @import statement.
+   *
+   * @return The position after the last parsed path.
+   */
+  private static int parseImport(String source, int i, boolean indented, List<String> specs) {
+    while (true) {
+      i = skipWhitespace(source, i);
+
+      if (i >= source.length() || source.startsWith("url(", i)) {
+        return i;
+      }
+
+      int end;
+
+      if ('"' == source.charAt(i) || '\'' == source.charAt(i)) {
+        end = skipString(source, i);
+        specs.add(source.substring(i + 1, Math.max(i + 1, end - 1)).replace("\\", ""));
+      } else if (indented) {
+        end = i;
+
+        while (end < source.length() && ',' != source.charAt(end) && '\n' != source.charAt(end)) {
+          end++;
+        }
+
+        specs.add(source.substring(i, end).trim());
+      } else {
+        return i;
+      }
+
+      i = skipWhitespace(source, end);
+
+      if (i >= source.length() || ',' != source.charAt(i)) {
+        return i;
+      }
+
+      i++;
+    }
+  }
+
+  private static int skipWhitespace(String source, int i) {
+    while (i < source.length() && Character.isWhitespace(source.charAt(i))) {
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * Return the position after a quoted string starting at the given position.
+   */
+  private static int skipString(String source, int i) {
+    char quote = source.charAt(i);
+
+    for (i++; i < source.length(); i++) {
+      char c = source.charAt(i);
+
+      if ('\\' == c) {
+        i++;
+      } else if (quote == c || '\n' == c) {
+        return i + 1;
+      }
+    }
+
+    return source.length();
+  }
+
+  private static Path normalize(Path file) {
+    return file.toAbsolutePath().normalize();
+  }
+}
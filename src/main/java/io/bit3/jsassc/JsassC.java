@@ -4,6 +4,7 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.IOUtils;
 
@@ -11,16 +12,37 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import io.bit3.jsass.CompilationException;
 import io.bit3.jsass.Compiler;
@@ -32,23 +54,33 @@ import io.bit3.jsass.OutputStyle;
  * Compiler implementation of jsass.
  */
 public class JsassC {
+  /**
+   * The significance level used to detect benchmark regressions and A/B differences.
+   */
+  private static final double SIGNIFICANCE_LEVEL = 0.05;
+
+  /**
+   * A single component of a duration, e.g. 5m.
+   */
+  private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)(ms|s|m|h)");
+
   /**
    * Callable used with the executor.
    */
-  static class CompilerRunnerCallable implements Callable<Long> {
+  static class CompilerRunnerCallable implements Callable<WorkerCompileRunner> {
     /**
-     * The compiler to run.
+     * The benchmark worker to run.
      */
-    private final CompileRunner runner;
+    private final WorkerCompileRunner runner;
 
-    public CompilerRunnerCallable(final CompileRunner runner) {
+    public CompilerRunnerCallable(final WorkerCompileRunner runner) {
       this.runner = runner;
     }
 
     @Override
-    public Long call() throws Exception {
+    public WorkerCompileRunner call() throws Exception {
       runner.run();
-      return runner.getExecutionTimeMillis();
+      return runner;
     }
   }
 
@@ -61,23 +93,185 @@ public class JsassC {
      */
     Output getOutput();
 
+    /**
+     * Return the compilation execution time in nanoseconds.
+     */
+    long getExecutionTimeNanos();
+
     /**
      * Return the compilation execution time.
      */
-    long getExecutionTimeMillis();
+    default long getExecutionTimeMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(getExecutionTimeNanos());
+    }
+
+    /**
+     * Return the time it took to acquire the compiler instance in nanoseconds.
+     */
+    long getAcquireTimeNanos();
+
+    /**
+     * Return the System.nanoTime() the compilation started at.
+     */
+    long getStartNanos();
+
+    /**
+     * Return the cpu time of the compilation in nanoseconds, or -1 if not supported.
+     */
+    long getCpuTimeNanos();
+
+    /**
+     * Return the bytes allocated on the java heap by the compilation, or -1 if not supported.
+     */
+    long getAllocatedBytes();
+  }
+
+  /**
+   * Factory that creates compiler runnables on demand.
+   */
+  interface CompileRunnerFactory {
+    /**
+     * Create a new compiler runnable.
+     */
+    CompileRunner create() throws IOException, URISyntaxException;
+
+    /**
+     * Return the size of the compiled input in bytes.
+     */
+    long getInputSize();
+  }
+
+  /**
+   * Factory creating file compilers.
+   */
+  static class CompileFileRunnerFactory implements CompileRunnerFactory {
+    /**
+     * The compiler instance provider.
+     */
+    private final CompilerProvider provider;
+
+    /**
+     * The input file.
+     */
+    private final URI in;
+
+    /**
+     * The output file.
+     */
+    private final URI out;
+
+    CompileFileRunnerFactory(CompilerProvider provider, URI in, URI out) {
+      this.provider = provider;
+      this.in = in;
+      this.out = out;
+    }
+
+    @Override
+    public CompileRunner create() {
+      return new CompileFileRunner(provider, in, out);
+    }
+
+    @Override
+    public long getInputSize() {
+      return new File(in).length();
+    }
+  }
+
+  /**
+   * Factory creating string compilers, that all share the same source.
+   */
+  static class CompileStringRunnerFactory implements CompileRunnerFactory {
+    /**
+     * The compiler instance provider.
+     */
+    private final CompilerProvider provider;
+
+    /**
+     * The source string.
+     */
+    private final String source;
+
+    CompileStringRunnerFactory(CompilerProvider provider, String source) {
+      this.provider = provider;
+      this.source = source;
+    }
+
+    @Override
+    public CompileRunner create() throws URISyntaxException {
+      return new CompileStringRunner(provider, source);
+    }
+
+    @Override
+    public long getInputSize() {
+      return source.getBytes(StandardCharsets.UTF_8).length;
+    }
   }
 
   /**
-   * Chain compiler that is used for benchmarking.
+   * Worker compiler that is used for benchmarking.
+   *
+   * The warmup compilations of the worker are executed first and their execution times get
+   * discarded. Afterwards the worker claims compilations from the counter it shares with all other
+   * workers, until all compilations are claimed. Compilers are created on demand, right before
+   * they are executed. The execution time of these compilers get summarized and every single
+   * execution time is recorded into a histogram.
+   *
+   * With multiple factories, the compilations interleave the variants in blocks. Each block
+   * contains every variant once, in a rotated order to avoid a systematic order bias.
+   *
+   * With a duration, the worker stops claiming compilations once the duration elapsed.
    *
-   * The chain will be executed until a compilation failed. The execution time of all chained
-   * compilers get summarized.
+   * With a steady state detector, the worker runs warmup compilations until the detector ends the
+   * warmup, instead of a fixed number.
+   *
+   * In quiet mode, the worker records into the progress meter instead of printing every finished
+   * compilation.
    */
-  static class ChainCompileRunner implements CompileRunner {
+  static class WorkerCompileRunner implements CompileRunner {
+    /**
+     * The number of warmup compilations of this worker.
+     */
+    private final int warmup;
+
+    /**
+     * The number of this worker, starting with 1.
+     */
+    private final int worker;
+
+    /**
+     * The number of measured compilations of all workers.
+     */
+    private final int iterations;
+
+    /**
+     * The number of unclaimed compilations shared by all workers.
+     */
+    private final AtomicInteger remaining;
+
+    /**
+     * The measurement duration, or 0 for no time limit.
+     */
+    private final long durationNanos;
+
     /**
-     * The compiler chain.
+     * The factories creating the compilers, one per variant.
      */
-    private final Collection<CompileRunner> runners;
+    private final List<CompileRunnerFactory> factories;
+
+    /**
+     * The barrier all workers wait on between warmup and measurement.
+     */
+    private final CyclicBarrier barrier;
+
+    /**
+     * The steady state detector shared by all workers, or null for a fixed warmup.
+     */
+    private final SteadyStateDetector steadyState;
+
+    /**
+     * The progress meter shared by all workers, or null if every compilation is printed.
+     */
+    private final ProgressMeter progress;
 
     /**
      * The last compilation output.
@@ -87,42 +281,157 @@ public class JsassC {
     /**
      * The summarized compilation time.
      */
-    private long executionTimeMillis = -1;
+    private long executionTimeNanos = -1;
+
+    /**
+     * The cpu time the worker consumed while measuring, or -1 if not supported.
+     */
+    private long cpuTimeNanos = -1;
+
+    /**
+     * The summarized compiler acquisition time.
+     */
+    private long acquireTimeNanos = -1;
+
+    /**
+     * The System.nanoTime() the measurement of this worker started at.
+     */
+    private long startNanos = -1;
+
+    /**
+     * The bytes the worker allocated while measuring, or -1 if not supported.
+     */
+    private long allocatedBytes = -1;
+
+    /**
+     * The execution times of the compilers executed by this worker.
+     */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * The compiler acquisition times of the compilers executed by this worker.
+     */
+    private final LatencyHistogram acquireHistogram = new LatencyHistogram();
+
+    /**
+     * The cpu times of the compilers executed by this worker.
+     */
+    private final LatencyHistogram cpuHistogram = new LatencyHistogram();
+
+    /**
+     * The allocated bytes of the compilers executed by this worker.
+     */
+    private final LatencyHistogram allocationHistogram = new LatencyHistogram();
+
+    /**
+     * The raw samples of the compilers executed by this worker, or null if not recorded.
+     */
+    private final List<BenchSample> samples;
 
-    ChainCompileRunner(Collection<CompileRunner> runners) {
-      this.runners = runners;
+    WorkerCompileRunner(
+        int worker,
+        BenchSettings settings,
+        AtomicInteger remaining,
+        List<CompileRunnerFactory> factories,
+        CyclicBarrier barrier,
+        SteadyStateDetector steadyState,
+        ProgressMeter progress
+    ) {
+      this.worker = worker;
+      this.warmup = settings.getWarmup();
+      this.iterations = settings.getIterations();
+      this.remaining = remaining;
+      this.durationNanos = settings.getDurationNanos();
+      this.factories = factories;
+      this.barrier = barrier;
+      this.steadyState = steadyState;
+      this.progress = progress;
+      this.samples = settings.isRecordSamples() ? new ArrayList<>() : null;
     }
 
     @Override
     public void run() {
-      executionTimeMillis = 0;
+      try {
+        for (int i = 0; null == steadyState ? i < warmup : !steadyState.isFinished(); i++) {
+          CompileRunner runner = createRunner(factories, i % factories.size());
+          runner.run();
+
+          if (null != steadyState) {
+            steadyState.record(runner.getExecutionTimeNanos());
+          }
+
+          printWarmupOutput(runner);
+        }
+      } catch (RuntimeException | Error e) {
+        breakBarrier();
+        throw e;
+      }
+
+      try {
+        barrier.await();
+      } catch (BrokenBarrierException e) {
+        // another worker failed during the warmup and reports its error
+        return;
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+
+      executionTimeNanos = 0;
+      acquireTimeNanos = 0;
+      startNanos = System.nanoTime();
+      long cpuTimeStart = currentThreadCpuTime();
+      long allocatedBytesStart = currentThreadAllocatedBytes();
 
-      for (CompileRunner runner : runners) {
+      long[] inputSizes = factories
+          .stream()
+          .mapToLong(CompileRunnerFactory::getInputSize)
+          .toArray();
+      long deadline = System.nanoTime() + durationNanos;
+      int claimed;
+      while ((0 == durationNanos || System.nanoTime() - deadline < 0) && 0 < (claimed = remaining.getAndDecrement())) {
+        int iteration = iterations - claimed;
+        int variant = variantOf(iteration, factories.size());
+        CompileRunner runner = createRunner(factories, variant);
         runner.run();
 
-        executionTimeMillis += runner.getExecutionTimeMillis();
+        executionTimeNanos += runner.getExecutionTimeNanos();
+        acquireTimeNanos += runner.getAcquireTimeNanos();
+        histogram.record(runner.getExecutionTimeNanos());
+        acquireHistogram.record(runner.getAcquireTimeNanos());
+        recordResources(runner, cpuHistogram, allocationHistogram);
         output = runner.getOutput();
 
-
-        if (0 == output.getErrorStatus()) {
-          System.out.println(
-              String.format(
-                  "Compiler %d finished after %d milliseconds",
-                  runner.hashCode(),
-                  runner.getExecutionTimeMillis()
+        if (null != samples) {
+          samples.add(
+              new BenchSample(
+                  worker,
+                  iteration,
+                  variant,
+                  runner.getExecutionTimeNanos(),
+                  null == output ? -1 : output.getErrorStatus(),
+                  inputSizes[variant],
+                  runner.getCpuTimeNanos(),
+                  runner.getAllocatedBytes(),
+                  runner.getStartNanos(),
+                  runner.getAcquireTimeNanos(),
+                  runner.getExecutionTimeNanos()
               )
           );
-        } else {
-          System.err.println(
-              String.format(
-                  "Compiler %d failed after %d milliseconds",
-                  runner.hashCode(),
-                  runner.getExecutionTimeMillis()
-              )
-          );
-          System.err.println(output.getErrorMessage());
-          System.err.println(output.getErrorJson());
         }
+
+        if (null != progress) {
+          progress.record(runner.getExecutionTimeNanos(), null == output || 0 != output.getErrorStatus());
+        }
+
+        printOutput(runner, null != progress);
+      }
+
+      if (-1 != cpuTimeStart) {
+        cpuTimeNanos = currentThreadCpuTime() - cpuTimeStart;
+      }
+
+      if (-1 != allocatedBytesStart) {
+        allocatedBytes = currentThreadAllocatedBytes() - allocatedBytesStart;
       }
     }
 
@@ -132,8 +441,85 @@ public class JsassC {
     }
 
     @Override
-    public long getExecutionTimeMillis() {
-      return executionTimeMillis;
+    public long getExecutionTimeNanos() {
+      return executionTimeNanos;
+    }
+
+    @Override
+    public long getAcquireTimeNanos() {
+      return acquireTimeNanos;
+    }
+
+    @Override
+    public long getStartNanos() {
+      return startNanos;
+    }
+
+    /**
+     * Return the histogram of the single execution times.
+     */
+    public LatencyHistogram getHistogram() {
+      return histogram;
+    }
+
+    /**
+     * Return the histogram of the single compiler acquisition times.
+     */
+    public LatencyHistogram getAcquireHistogram() {
+      return acquireHistogram;
+    }
+
+    /**
+     * Return the histogram of the single compilation cpu times.
+     */
+    public LatencyHistogram getCpuHistogram() {
+      return cpuHistogram;
+    }
+
+    /**
+     * Return the histogram of the single compilation allocated bytes.
+     */
+    public LatencyHistogram getAllocationHistogram() {
+      return allocationHistogram;
+    }
+
+    /**
+     * Return the raw samples, or null if not recorded.
+     */
+    public List<BenchSample> getSamples() {
+      return samples;
+    }
+
+    /**
+     * Break the barrier after a failed warmup, so the other workers stop waiting for this one.
+     *
+     * The reset releases the waiting workers, the expired wait keeps the barrier broken for the
+     * workers still warming up.
+     */
+    private void breakBarrier() {
+      barrier.reset();
+
+      try {
+        barrier.await(0, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+        // the barrier is broken
+      }
+    }
+
+    /**
+     * Return the cpu time consumed by the measured compilations, or -1 if not supported.
+     */
+    @Override
+    public long getCpuTimeNanos() {
+      return cpuTimeNanos;
+    }
+
+    /**
+     * Return the bytes allocated by the measured compilations, or -1 if not supported.
+     */
+    @Override
+    public long getAllocatedBytes() {
+      return allocatedBytes;
     }
   }
 
@@ -142,14 +528,9 @@ public class JsassC {
    */
   static abstract class AbstractCompileRunner implements CompileRunner {
     /**
-     * The jsass compiler.
+     * The provider of the jsass compiler instance.
      */
-    protected final Compiler compiler;
-
-    /**
-     * The jsass compiler options.
-     */
-    protected final Options options;
+    private final CompilerProvider provider;
 
     /**
      * The compilation output.
@@ -159,30 +540,64 @@ public class JsassC {
     /**
      * The compilation execution time.
      */
-    private long executionTimeMillis = -1;
+    private long executionTimeNanos = -1;
+
+    /**
+     * The time it took to acquire the compiler instance.
+     */
+    private long acquireTimeNanos = -1;
+
+    /**
+     * The System.nanoTime() the compilation started at.
+     */
+    private long startNanos = -1;
+
+    /**
+     * The cpu time of the compilation, or -1 if not supported.
+     */
+    private long cpuTimeNanos = -1;
 
-    public AbstractCompileRunner(boolean compress, URI sourceMap) throws URISyntaxException {
-      compiler = new Compiler();
-      options = new Options();
-      options.setOutputStyle(compress ? OutputStyle.COMPRESSED : OutputStyle.NESTED);
-      options.setSourceMapFile(null == sourceMap ? null : sourceMap);
+    /**
+     * The bytes allocated by the compilation, or -1 if not supported.
+     */
+    private long allocatedBytes = -1;
+
+    public AbstractCompileRunner(CompilerProvider provider) {
+      this.provider = provider;
     }
 
     @Override
     public final void run() {
-      long timeMillis = System.currentTimeMillis();
+      long acquireNanos = System.nanoTime();
+      CompilerInstance instance = provider.acquire();
+      acquireTimeNanos = System.nanoTime() - acquireNanos;
+
+      long allocatedBytesStart = currentThreadAllocatedBytes();
+      long cpuTimeStart = currentThreadCpuTime();
+      startNanos = System.nanoTime();
       try {
-        output = compile();
+        output = compile(instance.getCompiler(), instance.getOptions());
       } catch (CompilationException e) {
         e.printStackTrace();
+      } finally {
+        executionTimeNanos = System.nanoTime() - startNanos;
+
+        if (-1 != cpuTimeStart) {
+          cpuTimeNanos = currentThreadCpuTime() - cpuTimeStart;
+        }
+
+        if (-1 != allocatedBytesStart) {
+          allocatedBytes = currentThreadAllocatedBytes() - allocatedBytesStart;
+        }
+
+        provider.release(instance);
       }
-      executionTimeMillis = System.currentTimeMillis() - timeMillis;
     }
 
     /**
      * Execute the compilation.
      */
-    protected abstract Output compile() throws CompilationException;
+    protected abstract Output compile(Compiler compiler, Options options) throws CompilationException;
 
     @Override
     public Output getOutput() {
@@ -190,8 +605,28 @@ public class JsassC {
     }
 
     @Override
-    public long getExecutionTimeMillis() {
-      return executionTimeMillis;
+    public long getExecutionTimeNanos() {
+      return executionTimeNanos;
+    }
+
+    @Override
+    public long getAcquireTimeNanos() {
+      return acquireTimeNanos;
+    }
+
+    @Override
+    public long getStartNanos() {
+      return startNanos;
+    }
+
+    @Override
+    public long getCpuTimeNanos() {
+      return cpuTimeNanos;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+      return allocatedBytes;
     }
   }
 
@@ -209,14 +644,14 @@ public class JsassC {
      */
     private final URI out;
 
-    public CompileFileRunner(boolean compress, URI in, URI out, URI sourceMap) throws URISyntaxException {
-      super(compress, sourceMap);
+    public CompileFileRunner(CompilerProvider provider, URI in, URI out) {
+      super(provider);
       this.in = in;
       this.out = out;
     }
 
     @Override
-    protected Output compile() throws CompilationException {
+    protected Output compile(Compiler compiler, Options options) throws CompilationException {
       return compiler.compileFile(in, out, options);
     }
   }
@@ -240,15 +675,15 @@ public class JsassC {
      */
     private final URI out;
 
-    public CompileStringRunner(boolean compress, String source, URI sourceMap) throws URISyntaxException {
-      super(compress, sourceMap);
+    public CompileStringRunner(CompilerProvider provider, String source) throws URISyntaxException {
+      super(provider);
       this.source = source;
       in = new URI("source.scss");
       out = new URI("source.css");
     }
 
     @Override
-    protected Output compile() throws CompilationException {
+    protected Output compile(Compiler compiler, Options options) throws CompilationException {
       return compiler.compileString(source, in, out, options);
     }
   }
@@ -257,16 +692,46 @@ public class JsassC {
    * Execute the application.
    */
   public static void main(String[] args) {
+    StartupTimer startup = new StartupTimer();
     final org.apache.commons.cli.Options options = new org.apache.commons.cli.Options();
     options.addOption("h", "help", false, "Show this help.");
     options.addOption("b", "bench", true, "Run benchmark with X iterations.");
-    options.addOption("t", "threads", true, "Run benchmark with X threads.");
+    options.addOption("t", "threads", true, "Run benchmark or batch with X threads, the batch defaults to the processors.");
+    options.addOption("w", "warmup", true, "Run X discarded warmup iterations per thread before the benchmark, or auto until steady state.");
+    options.addOption(null, "warmup-max", true, "Maximum number of auto warmup iterations over all threads, defaults to 10000.");
+    options.addOption(null, "duration", true, "Run benchmark for duration X, e.g. 30s, 5m or 1h30m.");
+    options.addOption(null, "soak", true, "Run benchmark for duration X and fail if the process memory keeps growing.");
+    options.addOption(null, "soak-interval", true, "Sample the process memory every duration X, defaults to 10s.");
+    options.addOption(null, "soak-warmup", true, "Ignore the memory samples of the first duration X, defaults to a quarter of the soak.");
+    options.addOption(null, "soak-max-growth", true, "Tolerated memory growth in MiB per hour, defaults to 16.");
+    options.addOption(null, "rate", true, "Start compilations open-loop at the fixed rate X, e.g. 50/s or 600/m.");
+    options.addOption("q", "quiet", false, "Print the benchmark progress once per second instead of every compilation.");
+    options.addOption(null, "gc", false, "Attribute garbage collection pauses to the compilations in flight.");
+    options.addOption(null, "forks", true, "Run the benchmark in X fresh JVMs and report the variance between them.");
+    options.addOption(null, "scaling", true, "Run benchmark with 1..X threads, doubling the threads on each step.");
+    options.addOption(null, "compiler-scope", true, "Compiler instance lifecycle: per-run (default), per-thread or pool.");
+    options.addOption(null, "compiler-pool-size", true, "Maximum number of pooled compiler instances, defaults to the threads.");
+    options.addOption(null, "report-format", true, "Benchmark report file format: json or csv, defaults to the file extension.");
+    options.addOption(null, "report-file", true, "Write the benchmark report with all raw samples into file X.");
+    options.addOption(null, "baseline", true, "Compare the benchmark against json report X and fail on regressions.");
+    options.addOption(null, "regression-threshold", true, "Tolerated median and p99 latency increase in percent, defaults to 5.");
+    options.addOption(null, "ab", true, "Interleave a variant B with the overrides X, e.g. compress,no-source-map,input=b.scss.");
+    options.addOption(null, "cold-start", true, "Compile once in X fresh processes and report the startup time breakdown.");
+    options.addOption(null, "startup-report", true, "Write the startup phase times of a single compilation into file X.");
+    options.addOption(null, "batch", true, "Compile all entrypoints of the input directories or glob patterns into directory X.");
+    options.addOption(null, "watch", false, "Keep running and recompile the entrypoints affected by changed files.");
+    options.addOption(null, "watch-debounce", true, "Recompile after duration X without further changes, defaults to 100ms.");
+    options.addOption(null, "incremental", false, "Only compile the batch entrypoints with outputs older than their imported files.");
+    options.addOption(null, "depfile", true, "Write the imported files as make depfile X, with a batch into directory X mirroring the output.");
+    options.addOption(null, "cache-dir", true, "Restore unchanged compilations from the content addressed cache in directory X.");
+    options.addOption("I", "include-path", true, "Search imports in directory X, may be repeated.");
     options.addOption("c", "compress", false, "Compress (minify) the output.");
     options.addOption("m", "source-map", false, "Generate source map.");
 
     try {
       final CommandLineParser parser = new DefaultParser();
       final CommandLine commandLine = parser.parse(options, args);
+      startup.mark("command line");
 
       if (commandLine.hasOption('h')) {
         showHelp(options);
@@ -279,7 +744,13 @@ public class JsassC {
       URI out = null;
       URI map = null;
 
-      if (argList.size() > 2) {
+      boolean batch = commandLine.hasOption("batch");
+
+      if (batch) {
+        if (argList.isEmpty()) {
+          throw new ParseException("The batch requires input directories or glob patterns");
+        }
+      } else if (argList.size() > 2) {
         throw new ParseException("To many arguments");
       } else if (2 == argList.size()) {
         in = new File(argList.get(0)).toURI();
@@ -293,97 +764,1016 @@ public class JsassC {
         map = null == out ? new File("style.css.map").toURI() : new URI(out.toString() + ".map");
       }
 
-      boolean compress = commandLine.hasOption('c');
+      final boolean compress = commandLine.hasOption('c');
+      final URI sourceMap = map;
+      final List<File> includePaths = new ArrayList<>();
 
-      if (commandLine.hasOption('b')) {
-        int iterations = Integer.parseInt(commandLine.getOptionValue('b'));
-        int threads = commandLine.hasOption('t') ? Integer.parseInt(commandLine.getOptionValue('t')) : 1;
-        runBench(iterations, threads, in, out, map, compress);
-      } else {
-        runOnce(in, out, map, compress);
+      if (commandLine.hasOption('I')) {
+        for (String includePath : commandLine.getOptionValues('I')) {
+          includePaths.add(new File(includePath));
+        }
       }
-    } catch (ParseException e) {
-      System.err.println(e.getMessage());
-      showHelp(options);
-    } catch (URISyntaxException | IOException e) {
-      e.printStackTrace();
-    }
-  }
 
-  /**
-   * Run benchmark compilation.
-   */
-  private static void runBench(int iterations, int threads, URI in, URI out, URI map, boolean compress) throws IOException, URISyntaxException {
-    ExecutorService executor = Executors.newFixedThreadPool(threads);
+      List<Path> includeDirectories = includePaths
+          .stream()
+          .map(File::toPath)
+          .collect(Collectors.toList());
+      String depfile = commandLine.getOptionValue("depfile");
 
-    int iterationsPerThread = iterations / threads;
-    iterations = iterationsPerThread * threads;
+      if (null != depfile && !batch && (null == in || null == out)) {
+        throw new ParseException("The depfile requires an input and output file or a batch");
+      }
 
-    Collection<Callable<Long>> tasks = new LinkedList<>();
-    for (int i = 0; i < threads; i++) {
-      Collection<CompileRunner> runners = new LinkedList<>();
+      String cacheDirectory = commandLine.getOptionValue("cache-dir");
 
-      for (int j = 0; j < iterationsPerThread; j++) {
-        CompileRunner runner = createCompileRunner(in, out, map, compress);
-        runners.add(runner);
+      if (null != cacheDirectory && !batch && (null == in || null == out)) {
+        throw new ParseException("The cache requires an input and output file or a batch");
       }
 
-      CompileRunner runner = new ChainCompileRunner(runners);
-      CompilerRunnerCallable callable = new CompilerRunnerCallable(runner);
-      tasks.add(callable);
-    }
+      int threads = commandLine.hasOption('t') ? Integer.parseInt(commandLine.getOptionValue('t')) : 1;
 
-    try {
-      long executionTime = executor
-          .invokeAll(tasks)
-          .stream()
-          .mapToLong(JsassC::getCatch)
-          .sum();
-      long seconds = executionTime / 1000;
-      long minutes = seconds / 60;
-      seconds %= 60;
+      CompilerScope scope = CompilerScope.PER_RUN;
+      if (commandLine.hasOption("compiler-scope")) {
+        try {
+          scope = CompilerScope.fromString(commandLine.getOptionValue("compiler-scope"));
+        } catch (IllegalArgumentException e) {
+          throw new ParseException(e.getMessage());
+        }
+      }
 
-      System.out.println("Finished benchmark");
-      System.out.println(
+      int poolSize = commandLine.hasOption("compiler-pool-size")
+          ? parsePoolSize(commandLine.getOptionValue("compiler-pool-size"))
+          : threads;
+
+      boolean watch = commandLine.hasOption("watch");
+
+      if (batch || watch) {
+        if (commandLine.hasOption('b') || commandLine.hasOption("duration") || commandLine.hasOption("rate")
+            || commandLine.hasOption("soak") || commandLine.hasOption("cold-start")) {
+          throw new ParseException("The batch and the watch can not be combined with a benchmark");
+        }
+
+        if (!batch && (null == in || null == out)) {
+          throw new ParseException("The watch requires an input file or a batch");
+        }
+
+        if (commandLine.hasOption("incremental") && (!batch || watch)) {
+          throw new ParseException("The incremental compilation requires a batch without watch");
+        }
+
+        long debounceNanos = parseDuration(commandLine.getOptionValue("watch-debounce", "100ms"));
+        ImportGraph graph = new ImportGraph(includeDirectories);
+        BatchCompiler compiler = new BatchCompiler(
+            batch ? Paths.get(commandLine.getOptionValue("batch")) : null,
+            batch && null != depfile ? Paths.get(depfile) : null,
+            compress,
+            null != map,
+            includePaths,
+            graph,
+            batch && !commandLine.hasOption('t') ? Runtime.getRuntime().availableProcessors() : threads
+        );
+
+        if (null != cacheDirectory) {
+          compiler.setCache(new CompileCache(Paths.get(cacheDirectory), graph));
+        }
+
+        try {
+          if (!batch) {
+            BatchCompiler.Entrypoint entrypoint = new BatchCompiler.Entrypoint(
+                Paths.get(in),
+                Paths.get(out),
+                null == map ? null : Paths.get(map),
+                null == depfile ? null : Paths.get(depfile)
+            );
+
+            runWatch(compiler, graph, () -> Collections.singletonList(entrypoint),
+                Collections.singletonList(entrypoint.getInput().getParent()), includeDirectories, debounceNanos);
+          } else if (watch) {
+            runWatch(compiler, graph, () -> compiler.find(argList),
+                BatchCompiler.roots(argList), includeDirectories, debounceNanos);
+          } else {
+            runBatch(compiler, argList, commandLine.hasOption("incremental"));
+          }
+        } finally {
+          compiler.shutdown();
+        }
+
+        return;
+      }
+
+      String source = null == in || null == out ? IOUtils.toString(System.in) : null;
+      CompilerProvider provider = scope.createProvider(() -> createOptions(compress, sourceMap, includePaths), poolSize);
+      CompileRunnerFactory factory = createCompileRunnerFactory(in, out, source, provider);
+      List<CompileRunnerFactory> factories = new ArrayList<>();
+      factories.add(factory);
+
+      if (commandLine.hasOption("ab")) {
+        boolean compressB = compress;
+        URI inB = in;
+        URI outB = out;
+        boolean sourceMapB = null != map;
+
+        for (String override : commandLine.getOptionValue("ab").split(",")) {
+          override = override.trim();
+
+          if ("compress".equals(override)) {
+            compressB = true;
+          } else if ("nested".equals(override)) {
+            compressB = false;
+          } else if ("source-map".equals(override)) {
+            sourceMapB = true;
+          } else if ("no-source-map".equals(override)) {
+            sourceMapB = false;
+          } else if (override.startsWith("input=")) {
+            String input = override.substring("input=".length());
+            inB = new File(input).toURI();
+            outB = new File(input.replaceAll("\\.s[ac]ss$", "") + ".css").toURI();
+          } else {
+            throw new ParseException("Unknown A/B override " + override);
+          }
+        }
+
+        final boolean variantCompress = compressB;
+        final URI variantMap = !sourceMapB ? null : null == outB
+            ? new File("style.css.map").toURI()
+            : new URI(outB.toString() + ".map");
+        CompilerProvider providerB = scope.createProvider(() -> createOptions(variantCompress, variantMap, includePaths), poolSize);
+        factories.add(createCompileRunnerFactory(inB, outB, source, providerB));
+      }
+
+      boolean benchMode = commandLine.hasOption('b')
+          || commandLine.hasOption("duration")
+          || commandLine.hasOption("rate")
+          || commandLine.hasOption("soak");
+
+      if (commandLine.hasOption("cold-start")) {
+        int runs = Integer.parseInt(commandLine.getOptionValue("cold-start"));
+
+        if (benchMode || runs < 1) {
+          throw new ParseException("The cold start requires a number of runs and can not be combined with a benchmark");
+        }
+
+        try {
+          ColdStartBench.run(runs, childArguments(commandLine, ColdStartBench.PARENT_OPTIONS), source);
+        } catch (IOException e) {
+          System.err.println(e.getMessage());
+          System.exit(1);
+        }
+      } else if (benchMode) {
+        runBenchmark(commandLine, factories, threads, source);
+      } else {
+        startup.mark("setup");
+
+        if (commandLine.hasOption("startup-report")) {
+          // load the jsass classes and the native library separately, before the first compilation
+          createOptions(compress, sourceMap, includePaths);
+          startup.mark("jsass classes");
+          new Compiler();
+          startup.mark("native library");
+        }
+
+        ImportGraph graph = new ImportGraph(includeDirectories);
+        CompileCache cache = null == cacheDirectory ? null : new CompileCache(Paths.get(cacheDirectory), graph);
+
+        runOnce(
+            factory,
+            in,
+            out,
+            map,
+            createOptions(compress, map, includePaths),
+            cache,
+            graph,
+            null == depfile ? null : Paths.get(depfile),
+            startup
+        );
+
+        if (commandLine.hasOption("startup-report")) {
+          startup.write(commandLine.getOptionValue("startup-report"));
+        }
+      }
+    } catch (ParseException e) {
+      System.err.println(e.getMessage());
+      showHelp(options);
+    } catch (URISyntaxException | IOException | InterruptedException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Run the configured benchmark, exit with status 1 on regressions or memory growth.
+   */
+  private static void runBenchmark(CommandLine commandLine, List<CompileRunnerFactory> factories, int threads, String source)
+      throws ParseException, IOException, InterruptedException {
+    BenchSettings settings = new BenchSettings();
+
+    if (commandLine.hasOption('b')) {
+      settings.setIterations(Integer.parseInt(commandLine.getOptionValue('b')));
+    } else if (!commandLine.hasOption("duration") && !commandLine.hasOption("soak")) {
+      throw new ParseException("The rate requires the iterations or a duration");
+    }
+
+    if (commandLine.hasOption("duration")) {
+      settings.setDurationNanos(parseDuration(commandLine.getOptionValue("duration")));
+    }
+
+    SoakMonitor soakMonitor = null;
+    long soakWarmupNanos = 0;
+    double soakMaxGrowth = 0;
+
+    if (commandLine.hasOption("soak")) {
+      if (commandLine.hasOption("duration") || commandLine.hasOption("scaling")) {
+        throw new ParseException("The soak can not be combined with a duration or scaling");
+      }
+
+      // these record every sample, so the memory of the tool itself would keep growing
+      for (String option : new String[]{"report-file", "baseline", "ab", "gc", "forks"}) {
+        if (commandLine.hasOption(option)) {
+          throw new ParseException("The soak can not be combined with --" + option);
+        }
+      }
+
+      long soakNanos = parseDuration(commandLine.getOptionValue("soak"));
+      settings.setDurationNanos(soakNanos);
+      soakMonitor = new SoakMonitor(parseDuration(commandLine.getOptionValue("soak-interval", "10s")));
+      soakWarmupNanos = commandLine.hasOption("soak-warmup")
+          ? parseDuration(commandLine.getOptionValue("soak-warmup"))
+          : soakNanos / 4;
+      soakMaxGrowth = Double.parseDouble(commandLine.getOptionValue("soak-max-growth", "16")) * 1048576;
+    }
+
+    if (commandLine.hasOption("rate")) {
+      settings.setRate(parseRate(commandLine.getOptionValue("rate")));
+    }
+
+    if ("auto".equals(commandLine.getOptionValue('w'))) {
+      settings.setAutoWarmup(true);
+      settings.setMaxWarmup(Integer.parseInt(commandLine.getOptionValue("warmup-max", "10000")));
+    } else {
+      settings.setWarmup(commandLine.hasOption('w') ? Integer.parseInt(commandLine.getOptionValue('w')) : 0);
+    }
+
+    String reportFile = commandLine.getOptionValue("report-file");
+    String reportFormat = commandLine.getOptionValue(
+        "report-format",
+        null != reportFile && reportFile.endsWith(".csv") ? "csv" : "json"
+    );
+
+    if (null == reportFile && commandLine.hasOption("report-format")) {
+      throw new ParseException("The report format requires a report file");
+    }
+
+    if (!"json".equals(reportFormat) && !"csv".equals(reportFormat)) {
+      throw new ParseException("Unknown report format " + reportFormat);
+    }
+
+    BenchBaseline baseline = null;
+    double threshold = Double.parseDouble(commandLine.getOptionValue("regression-threshold", "5"));
+
+    if (commandLine.hasOption("baseline")) {
+      baseline = BenchBaseline.load(new File(commandLine.getOptionValue("baseline")));
+    }
+
+    boolean forked = commandLine.hasOption("forks");
+    GcMonitor gcMonitor = commandLine.hasOption("gc") && !forked ? new GcMonitor() : null;
+
+    settings.setQuiet(commandLine.hasOption('q'));
+    settings.setRecordSamples(null != reportFile || null != baseline || null != gcMonitor || 1 < factories.size());
+    List<BenchResult> results;
+
+    if (null != gcMonitor) {
+      gcMonitor.start();
+    }
+
+    if (forked) {
+      int forks = Integer.parseInt(commandLine.getOptionValue("forks"));
+
+      if (forks < 1) {
+        throw new ParseException("Invalid number of forks " + forks);
+      }
+
+      try {
+        results = ForkedBench.run(forks, childArguments(commandLine, ForkedBench.PARENT_OPTIONS), source);
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+        System.exit(1);
+        return;
+      }
+
+      results.forEach(JsassC::printBench);
+    } else if (commandLine.hasOption("scaling")) {
+      String[] range = commandLine.getOptionValue("scaling").split("\\.\\.", 2);
+      int minThreads = 2 == range.length ? Integer.parseInt(range[0]) : 1;
+      int maxThreads = Integer.parseInt(range[range.length - 1]);
+
+      if (minThreads < 1 || maxThreads < minThreads) {
+        throw new ParseException("Invalid scaling range " + commandLine.getOptionValue("scaling"));
+      }
+
+      results = runScaling(settings, minThreads, maxThreads, factories);
+    } else if (null != soakMonitor) {
+      soakMonitor.start();
+      results = Collections.singletonList(runBench(settings, threads, factories));
+      soakMonitor.stop();
+    } else {
+      results = Collections.singletonList(runBench(settings, threads, factories));
+    }
+
+    if (null != gcMonitor) {
+      gcMonitor.stop();
+
+      for (BenchResult result : results) {
+        result.setGcCorrelation(gcMonitor.correlate(result));
+      }
+    }
+
+    if (1 < factories.size()) {
+      for (BenchResult result : results) {
+        printAbComparison(result, commandLine.getOptionValue("ab"));
+      }
+    }
+
+    if (null != reportFile) {
+      writeReport(reportFormat, reportFile, commandLine, results);
+    }
+
+    if (null != baseline) {
+      boolean regression = false;
+
+      for (BenchResult result : results) {
+        regression |= baseline.compare(result, threshold, SIGNIFICANCE_LEVEL);
+      }
+
+      if (regression) {
+        System.exit(1);
+      }
+    }
+
+    if (null != soakMonitor && soakMonitor.evaluate(soakWarmupNanos, soakMaxGrowth)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Rebuild the command line arguments for a child process, without the options of the parent.
+   */
+  private static List<String> childArguments(CommandLine commandLine, Collection<String> parentOptions) {
+    List<String> arguments = new ArrayList<>();
+
+    for (Option option : commandLine.getOptions()) {
+      String name = null == option.getLongOpt() ? option.getOpt() : option.getLongOpt();
+
+      if (parentOptions.contains(name)) {
+        continue;
+      }
+
+      arguments.add(null == option.getLongOpt() ? "-" + name : "--" + name);
+
+      if (option.hasArg()) {
+        arguments.add(option.getValue());
+      }
+    }
+
+    arguments.addAll(commandLine.getArgList());
+
+    return arguments;
+  }
+
+  /**
+   * Write the benchmark report file.
+   */
+  private static void writeReport(String format, String file, CommandLine commandLine, List<BenchResult> results) throws IOException {
+    Map<String, String> reportOptions = new LinkedHashMap<>();
+
+    for (Option option : commandLine.getOptions()) {
+      String name = null == option.getLongOpt() ? option.getOpt() : option.getLongOpt();
+      reportOptions.put(name, option.hasArg() ? option.getValue() : "true");
+    }
+
+    List<String> argList = commandLine.getArgList();
+    reportOptions.put("input", argList.isEmpty() ? "stdin" : argList.get(0));
+
+    try (
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+    ) {
+      new BenchReportWriter(reportOptions).write(format, results, writer);
+    }
+  }
+
+  /**
+   * Print the comparison of the interleaved variants A and B.
+   */
+  private static void printAbComparison(BenchResult result, String overrides) {
+    long[] samplesA = result
+        .getSamples()
+        .stream()
+        .filter(sample -> 0 == sample.getVariant())
+        .mapToLong(BenchSample::getNanos)
+        .toArray();
+    long[] samplesB = result
+        .getSamples()
+        .stream()
+        .filter(sample -> 1 == sample.getVariant())
+        .mapToLong(BenchSample::getNanos)
+        .toArray();
+    BenchComparison comparison = new BenchComparison(samplesA, samplesB);
+
+    System.out.println(
+        String.format(
+            "A/B comparison with %d threads, B = %s",
+            result.getThreads(),
+            overrides
+        )
+    );
+    System.out.println(
+        String.format(
+            "  A %d compilations, B %d compilations",
+            samplesA.length,
+            samplesB.length
+        )
+    );
+
+    if (!comparison.isComparable()) {
+      System.out.println("  not enough compilations to compare");
+      return;
+    }
+
+    comparison.print("A", "B");
+
+    if (comparison.getTest().pTwoSided < SIGNIFICANCE_LEVEL) {
+      System.out.println(
           String.format(
-              "  total %d compilations",
-              iterations
+              "  B is significantly %s, median %+.2f%%",
+              comparison.getTest().z > 0 ? "slower" : "faster",
+              comparison.getChange(50)
           )
       );
+    } else {
       System.out.println(
           String.format(
-              "  with %d threads",
-              threads
+              "  no significant difference at significance level %.3f",
+              SIGNIFICANCE_LEVEL
           )
       );
+    }
+  }
+
+  /**
+   * Run benchmark compilation and print the result.
+   */
+  private static BenchResult runBench(BenchSettings settings, int threads, List<CompileRunnerFactory> factories) {
+    BenchResult result = 0 < settings.getRate()
+        ? OpenLoopBench.bench(settings, threads, factories)
+        : bench(settings, threads, factories);
+    printBench(result);
+    return result;
+  }
+
+  /**
+   * Run the benchmark with an increasing number of threads and print the scaling behavior.
+   */
+  private static List<BenchResult> runScaling(BenchSettings settings, int minThreads, int maxThreads, List<CompileRunnerFactory> factories) {
+    List<BenchResult> results = new LinkedList<>();
+
+    for (int threads : scalingSteps(minThreads, maxThreads)) {
+      System.out.println(String.format("Scaling step with %d threads", threads));
+
+      results.add(runBench(settings, threads, factories));
+    }
+
+    double baseThroughput = results.get(0).getThroughput() / results.get(0).getThreads();
+
+    System.out.println("Finished scaling benchmark");
+    System.out.println(
+        String.format(
+            "  %8s %12s %8s %10s %10s %10s %10s",
+            "threads",
+            "comp/s",
+            "speedup",
+            "efficiency",
+            "karp-flatt",
+            "p50 ms",
+            "p99 ms"
+        )
+    );
+
+    // fit Amdahl's law 1/S(n) = f + (1 - f) / n with least squares, x = 1/n, y = 1/S(n)
+    double numerator = 0;
+    double denominator = 0;
+
+    for (BenchResult result : results) {
+      int threads = result.getThreads();
+      double speedup = result.getThroughput() / baseThroughput;
+      double efficiency = speedup / threads;
+      double x = 1.0 / threads;
+      double y = 1.0 / speedup;
+
+      numerator += (y - x) * (1 - x);
+      denominator += (1 - x) * (1 - x);
+
       System.out.println(
           String.format(
-              "  total %d milliseconds / %d:%02d minutes",
-              executionTime,
-              minutes,
-              seconds
+              "  %8d %12.2f %8.2f %9.1f%% %10s %10.3f %10.3f",
+              threads,
+              result.getThroughput(),
+              speedup,
+              efficiency * 100,
+              1 == threads ? "-" : String.format("%.4f", (y - x) / (1 - x)),
+              result.getHistogram().getValueAtPercentile(50) / 1e6,
+              result.getHistogram().getValueAtPercentile(99) / 1e6
           )
       );
+    }
+
+    if (0 < denominator) {
+      double serialFraction = Math.min(1, Math.max(0, numerator / denominator));
+
       System.out.println(
           String.format(
-              "  per compilation %d milliseconds",
-              executionTime / iterations
+              "  amdahl serial fraction %.4f / max speedup %s",
+              serialFraction,
+              0 == serialFraction ? "unbounded" : String.format("%.2f", 1 / serialFraction)
           )
       );
+    }
+
+    return results;
+  }
+
+  /**
+   * Calculate the thread counts of a scaling benchmark, doubling from min up to max.
+   */
+  private static List<Integer> scalingSteps(int minThreads, int maxThreads) {
+    List<Integer> steps = new LinkedList<>();
+
+    for (int threads = minThreads; threads < maxThreads; threads *= 2) {
+      steps.add(threads);
+    }
+
+    steps.add(maxThreads);
+
+    return steps;
+  }
+
+  /**
+   * Parse a duration like 500ms, 30s, 5m or 1h30m into nanoseconds.
+   */
+  private static long parseDuration(String duration) throws ParseException {
+    Matcher matcher = DURATION_PATTERN.matcher(duration);
+    long nanos = 0;
+    int end = 0;
+
+    while (matcher.find() && matcher.start() == end) {
+      long value = Long.parseLong(matcher.group(1));
+
+      switch (matcher.group(2)) {
+        case "ms":
+          nanos += TimeUnit.MILLISECONDS.toNanos(value);
+          break;
+
+        case "s":
+          nanos += TimeUnit.SECONDS.toNanos(value);
+          break;
+
+        case "m":
+          nanos += TimeUnit.MINUTES.toNanos(value);
+          break;
+
+        default:
+          nanos += TimeUnit.HOURS.toNanos(value);
+      }
+
+      end = matcher.end();
+    }
+
+    if (0 == end || end != duration.length() || 0 >= nanos) {
+      throw new ParseException("Invalid duration " + duration);
+    }
+
+    return nanos;
+  }
+
+  /**
+   * Parse a rate like 50/s, 600/m or 1000/h into compilations per second.
+   */
+  private static double parseRate(String rate) throws ParseException {
+    String[] parts = rate.split("/", 2);
+    double value;
+
+    try {
+      value = Double.parseDouble(parts[0]);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid rate " + rate);
+    }
+
+    String unit = 2 == parts.length ? parts[1] : "s";
+
+    switch (unit) {
+      case "s":
+        break;
+
+      case "m":
+      case "min":
+        value /= 60;
+        break;
+
+      case "h":
+        value /= 3600;
+        break;
+
+      default:
+        throw new ParseException("Invalid rate " + rate);
+    }
+
+    if (!(0 < value) || Double.isInfinite(value)) {
+      throw new ParseException("Invalid rate " + rate);
+    }
+
+    return value;
+  }
+
+  /**
+   * Parse a compiler pool size, which must be at least 1.
+   */
+  private static int parsePoolSize(String poolSize) throws ParseException {
+    int value;
+
+    try {
+      value = Integer.parseInt(poolSize);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid compiler pool size " + poolSize);
+    }
+
+    if (value < 1) {
+      throw new ParseException("Invalid compiler pool size " + poolSize);
+    }
+
+    return value;
+  }
+
+  /**
+   * Run benchmark compilation.
+   */
+  private static BenchResult bench(BenchSettings settings, int threads, List<CompileRunnerFactory> factories) {
+    boolean recordSamples = settings.isRecordSamples();
+    ProgressMeter progress = settings.isQuiet()
+        ? new ProgressMeter(settings.getIterations(), settings.getDurationNanos())
+        : null;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    AtomicLong measurementStart = new AtomicLong();
+    CyclicBarrier barrier = new CyclicBarrier(threads, () -> {
+      measurementStart.set(System.nanoTime());
+
+      if (null != progress) {
+        progress.start();
+      }
+    });
+
+    AtomicInteger remaining = new AtomicInteger(settings.getIterations());
+    SteadyStateDetector steadyState = settings.isAutoWarmup() ? new SteadyStateDetector(settings.getMaxWarmup()) : null;
+
+    List<WorkerCompileRunner> workers = new LinkedList<>();
+    Collection<Callable<WorkerCompileRunner>> tasks = new LinkedList<>();
+    for (int i = 0; i < threads; i++) {
+      WorkerCompileRunner runner = new WorkerCompileRunner(
+          i + 1,
+          settings,
+          remaining,
+          factories,
+          barrier,
+          steadyState,
+          progress
+      );
+      CompilerRunnerCallable callable = new CompilerRunnerCallable(runner);
+      workers.add(runner);
+      tasks.add(callable);
+    }
+
+    try {
+      executor
+          .invokeAll(tasks)
+          .forEach(JsassC::getCatch);
+      long wallClockNanos = System.nanoTime() - measurementStart.get();
+
+      long executionTimeNanos = workers
+          .stream()
+          .mapToLong(CompileRunner::getExecutionTimeNanos)
+          .sum();
+      boolean cpuTimeSupported = workers
+          .stream()
+          .allMatch(worker -> -1 != worker.getCpuTimeNanos());
+      long cpuTimeNanos = !cpuTimeSupported ? -1 : workers
+          .stream()
+          .mapToLong(WorkerCompileRunner::getCpuTimeNanos)
+          .sum();
+      List<LatencyHistogram> histograms = workers
+          .stream()
+          .map(WorkerCompileRunner::getHistogram)
+          .collect(Collectors.toList());
+      LatencyHistogram acquireHistogram = new LatencyHistogram();
+      workers.forEach(worker -> acquireHistogram.add(worker.getAcquireHistogram()));
+      LatencyHistogram cpuHistogram = new LatencyHistogram();
+      workers.forEach(worker -> cpuHistogram.add(worker.getCpuHistogram()));
+      LatencyHistogram allocationHistogram = new LatencyHistogram();
+      workers.forEach(worker -> allocationHistogram.add(worker.getAllocationHistogram()));
+      List<BenchSample> samples = !recordSamples ? Collections.emptyList() : workers
+          .stream()
+          .flatMap(worker -> worker.getSamples().stream())
+          .sorted(Comparator.comparingInt(BenchSample::getIteration))
+          .collect(Collectors.toList());
+
+      BenchResult result = new BenchResult(
+          threads,
+          settings.getWarmup(),
+          wallClockNanos,
+          executionTimeNanos,
+          cpuTimeNanos,
+          histograms,
+          acquireHistogram,
+          samples
+      );
+      result.setCpuHistogram(cpuHistogram);
+      result.setAllocationHistogram(allocationHistogram);
+      result.setSteadyState(steadyState);
+
+      return result;
     } catch (Exception e) {
       throw new RuntimeException(e);
     } finally {
       executor.shutdown();
+
+      if (null != progress) {
+        progress.stop();
+      }
+    }
+  }
+
+  /**
+   * Print the benchmark result.
+   */
+  private static void printBench(BenchResult result) {
+    long iterations = result.getIterations();
+    long wallClockTime = TimeUnit.NANOSECONDS.toMillis(result.getWallClockNanos());
+    long seconds = wallClockTime / 1000;
+    long minutes = seconds / 60;
+    seconds %= 60;
+    long executionTime = TimeUnit.NANOSECONDS.toMillis(result.getExecutionTimeNanos());
+    long cpuTime = TimeUnit.NANOSECONDS.toMillis(result.getCpuTimeNanos());
+
+    System.out.println("Finished benchmark");
+    System.out.println(
+        String.format(
+            "  total %d compilations",
+            iterations
+        )
+    );
+    System.out.println(
+        String.format(
+            "  with %d threads",
+            result.getThreads()
+        )
+    );
+    if (null != result.getSteadyState()) {
+      System.out.println(
+          String.format(
+              "  after %d discarded warmup compilations in %d milliseconds, %s",
+              result.getSteadyState().getIterations(),
+              TimeUnit.NANOSECONDS.toMillis(result.getSteadyState().getNanos()),
+              result.getSteadyState().isSteady() ? "until steady state" : "steady state NOT reached"
+          )
+      );
+    } else {
+      System.out.println(
+          String.format(
+              "  after %d discarded warmup compilations per thread",
+              result.getWarmup()
+          )
+      );
+    }
+    System.out.println(
+        String.format(
+            "  wall-clock %d milliseconds / %d:%02d minutes",
+            wallClockTime,
+            minutes,
+            seconds
+        )
+    );
+    System.out.println(
+        String.format(
+            "  throughput %.2f compilations per second",
+            result.getThroughput()
+        )
+    );
+    if (0 < result.getTargetRate()) {
+      System.out.println(
+          String.format(
+              "  open-loop target rate %.2f compilations per second, latency measured from the intended start",
+              result.getTargetRate()
+          )
+      );
+    }
+    System.out.println(
+        String.format(
+            "  summed compile time %d milliseconds over all threads",
+            executionTime
+        )
+    );
+    if (-1 != result.getCpuTimeNanos()) {
+      System.out.println(
+          String.format(
+              "  aggregate cpu time %d milliseconds / %.2f cores busy",
+              cpuTime,
+              (double) cpuTime / Math.max(1, wallClockTime)
+          )
+      );
+    }
+    System.out.println(
+        String.format(
+            "  per compilation %d milliseconds",
+            executionTime / Math.max(1, iterations)
+        )
+    );
+    if (0 < result.getAcquireHistogram().getTotalCount()) {
+      System.out.println(
+          String.format(
+              "  compiler acquisition mean %.3f / p99 %.3f milliseconds, %.2f%% of the compile time",
+              result.getAcquireHistogram().getMean() / 1e6,
+              result.getAcquireHistogram().getValueAtPercentile(99) / 1e6,
+              result.getAcquireHistogram().getTotalValue() * 100.0 / Math.max(1, result.getExecutionTimeNanos())
+          )
+      );
+    }
+    if (0 < result.getCpuHistogram().getTotalCount()) {
+      System.out.println(
+          String.format(
+              "  compilation cpu time mean %.3f / p99 %.3f milliseconds, %.2f%% of the compile time",
+              result.getCpuHistogram().getMean() / 1e6,
+              result.getCpuHistogram().getValueAtPercentile(99) / 1e6,
+              result.getCpuHistogram().getTotalValue() * 100.0 / Math.max(1, result.getExecutionTimeNanos())
+          )
+      );
+    }
+    if (0 < result.getAllocationHistogram().getTotalCount()) {
+      System.out.println(
+          String.format(
+              "  compilation heap allocation mean %.1f / p99 %.1f KiB, %.1f MiB total",
+              result.getAllocationHistogram().getMean() / 1024,
+              result.getAllocationHistogram().getValueAtPercentile(99) / 1024.0,
+              result.getAllocationHistogram().getTotalValue() / 1048576.0
+          )
+      );
+    }
+
+    printLatencies(result);
+  }
+
+  /**
+   * Print the latency distribution of each worker and of the whole run.
+   */
+  private static void printLatencies(BenchResult result) {
+    System.out.println("Latency in milliseconds");
+    System.out.println(
+        String.format(
+            "  %-10s %8s %10s %10s %10s %10s %10s %10s",
+            "",
+            "count",
+            "min",
+            "p50",
+            "p90",
+            "p99",
+            "p99.9",
+            "max"
+        )
+    );
+
+    int worker = 0;
+    long maxCount = 0;
+    for (LatencyHistogram histogram : result.getThreadHistograms()) {
+      worker++;
+      maxCount = Math.max(maxCount, histogram.getTotalCount());
+      printLatency("worker " + worker, histogram);
+    }
+
+    printLatency("total", result.getHistogram());
+
+    if (null != result.getServiceHistogram()) {
+      printLatency("service", result.getServiceHistogram());
+    }
+
+    System.out.println(
+        String.format(
+            "  worker imbalance %.2f (most compilations of a worker / mean compilations per worker)",
+            maxCount * (double) worker / Math.max(1, result.getIterations())
+        )
+    );
+  }
+
+  /**
+   * Print a single latency distribution line.
+   */
+  private static void printLatency(String label, LatencyHistogram histogram) {
+    System.out.println(
+        String.format(
+            "  %-10s %8d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f",
+            label,
+            histogram.getTotalCount(),
+            histogram.getMin() / 1e6,
+            histogram.getValueAtPercentile(50) / 1e6,
+            histogram.getValueAtPercentile(90) / 1e6,
+            histogram.getValueAtPercentile(99) / 1e6,
+            histogram.getValueAtPercentile(99.9) / 1e6,
+            histogram.getMax() / 1e6
+        )
+    );
+  }
+
+  /**
+   * Compile all entrypoints of a batch.
+   *
+   * @param incremental Whether only the entrypoints with outdated outputs are compiled.
+   */
+  private static void runBatch(BatchCompiler compiler, List<String> patterns, boolean incremental)
+      throws IOException, InterruptedException {
+    List<BatchCompiler.Entrypoint> entrypoints = compiler.find(patterns);
+
+    if (incremental) {
+      List<BatchCompiler.Entrypoint> outdated = compiler.outdated(entrypoints);
+      System.out.println(String.format("Skipped %d up to date entrypoints", entrypoints.size() - outdated.size()));
+      entrypoints = outdated;
+    }
+
+    if (0 < compiler.compile(entrypoints)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Compile the entrypoints, then recompile them on changes within the source directories and the
+   * include paths.
+   */
+  private static void runWatch(
+      BatchCompiler compiler,
+      ImportGraph graph,
+      SourceWatcher.EntrypointFinder finder,
+      Collection<Path> sourceDirectories,
+      List<Path> includeDirectories,
+      long debounceNanos
+  ) throws IOException {
+    List<Path> roots = new ArrayList<>(includeDirectories);
+    roots.addAll(sourceDirectories);
+
+    new SourceWatcher(compiler, finder, graph, roots, debounceNanos).run();
+  }
+
+  /**
+   * Run compilation and write output to file, restoring it from the cache if possible.
+   *
+   * @param options The compiler options, part of the cache key.
+   * @param cache   The compile cache, or null without cache.
+   * @param graph   The import graph of the input.
+   * @param depfile The depfile to write, or null without depfile.
+   */
+  private static void runOnce(
+      CompileRunnerFactory factory,
+      URI in,
+      URI out,
+      URI map,
+      Options options,
+      CompileCache cache,
+      ImportGraph graph,
+      Path depfile,
+      StartupTimer startup
+  ) throws IOException, URISyntaxException {
+    Path mapFile = null == map ? null : Paths.get(map);
+    String key = null == cache ? null : cache.key(Paths.get(in), Paths.get(out), mapFile, options);
+
+    if (null != key && cache.restore(key, Paths.get(out), mapFile)) {
+      System.out.println("Compilation restored from cache");
+    } else {
+      compileOnce(factory, in, out, map, startup);
+
+      if (null != key) {
+        cache.store(key, Paths.get(out), mapFile);
+      }
+    }
+
+    if (null != depfile) {
+      Path input = Paths.get(in);
+
+      graph.add(input);
+      Depfile.write(depfile, Paths.get(out), input, graph.dependencies(input));
     }
   }
 
   /**
    * Run compilation and write output to file.
    */
-  private static void runOnce(URI in, URI out, URI map, boolean compress) throws IOException, URISyntaxException {
-    CompileRunner runner = createCompileRunner(in, out, map, compress);
+  private static void compileOnce(CompileRunnerFactory factory, URI in, URI out, URI map, StartupTimer startup)
+      throws IOException, URISyntaxException {
+    CompileRunner runner = factory.create();
 
     runner.run();
+    startup.mark("first compile");
 
     Output output = runner.getOutput();
 
@@ -415,12 +1805,14 @@ public class JsassC {
         IOUtils.write(output.getSourceMap(), os);
       }
     }
+
+    startup.mark("output write");
   }
 
   /**
    * Exception catching Future::get wrapper.
    */
-  private static long getCatch(Future<Long> future) {
+  private static <T> T getCatch(Future<T> future) {
     try {
       return future.get();
     } catch (InterruptedException | ExecutionException e) {
@@ -429,18 +1821,150 @@ public class JsassC {
   }
 
   /**
-   * Create a new compiler runnable.
+   * Return the variant of an iteration, when interleaving the given number of variants.
    */
-  private static CompileRunner createCompileRunner(URI in, URI out, URI map, boolean compress) throws IOException, URISyntaxException {
-    CompileRunner runner;
+  static int variantOf(int iteration, int variants) {
+    int block = iteration / variants;
+    int rotation = (int) ((block * 0x9E3779B97F4A7C15L >>> 32) % variants);
 
-    if (null == in || null == out) {
-      String source = IOUtils.toString(System.in);
-      runner = new CompileStringRunner(compress, source, map);
+    return (iteration % variants + rotation) % variants;
+  }
+
+  /**
+   * Create the next compiler of a variant.
+   */
+  static CompileRunner createRunner(List<CompileRunnerFactory> factories, int variant) {
+    try {
+      return factories.get(variant).create();
+    } catch (IOException | URISyntaxException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Print the error of a failed warmup compilation.
+   */
+  static void printWarmupOutput(CompileRunner runner) {
+    Output output = runner.getOutput();
+
+    if (null != output && 0 != output.getErrorStatus()) {
+      System.err.println(
+          String.format(
+              "Warmup compiler %d failed after %d milliseconds",
+              runner.hashCode(),
+              runner.getExecutionTimeMillis()
+          )
+      );
+      System.err.println(output.getErrorMessage());
+      System.err.println(output.getErrorJson());
+    }
+  }
+
+  /**
+   * Print the result of a measured compilation.
+   *
+   * @param quiet Whether successful compilations are not printed, e.g. while a progress meter runs.
+   */
+  static void printOutput(CompileRunner runner, boolean quiet) {
+    Output output = runner.getOutput();
+
+    if (null == output) {
+      return;
+    }
+
+    if (0 == output.getErrorStatus()) {
+      if (quiet) {
+        return;
+      }
+
+      System.out.println(
+          String.format(
+              "Compiler %d finished after %d milliseconds",
+              runner.hashCode(),
+              runner.getExecutionTimeMillis()
+          )
+      );
     } else {
-      runner = new CompileFileRunner(compress, in, out, map);
+      System.err.println(
+          String.format(
+              "Compiler %d failed after %d milliseconds",
+              runner.hashCode(),
+              runner.getExecutionTimeMillis()
+          )
+      );
+      System.err.println(output.getErrorMessage());
+      System.err.println(output.getErrorJson());
+    }
+  }
+
+  /**
+   * Return the cpu time of the current thread, or -1 if not supported.
+   */
+  static long currentThreadCpuTime() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+      return -1;
+    }
+
+    return threadMXBean.getCurrentThreadCpuTime();
+  }
+
+  /**
+   * Return the bytes allocated on the java heap by the current thread, or -1 if not supported.
+   */
+  static long currentThreadAllocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+
+    com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+    if (!allocationMXBean.isThreadAllocatedMemorySupported() || !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+
+    return allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Record the cpu time and allocated bytes of a compilation, if supported.
+   */
+  static void recordResources(CompileRunner runner, LatencyHistogram cpuHistogram, LatencyHistogram allocationHistogram) {
+    if (-1 != runner.getCpuTimeNanos()) {
+      cpuHistogram.record(runner.getCpuTimeNanos());
+    }
+
+    if (-1 != runner.getAllocatedBytes()) {
+      allocationHistogram.record(runner.getAllocatedBytes());
     }
-    return runner;
+  }
+
+  /**
+   * Create a new compiler runnable factory.
+   *
+   * Without input or output file, the source read from stdin is shared by all compilers created
+   * by the factory.
+   */
+  private static CompileRunnerFactory createCompileRunnerFactory(URI in, URI out, String source, CompilerProvider provider) {
+    if (null == in || null == out) {
+      return new CompileStringRunnerFactory(provider, source);
+    }
+
+    return new CompileFileRunnerFactory(provider, in, out);
+  }
+
+  /**
+   * Create new jsass compiler options.
+   */
+  static Options createOptions(boolean compress, URI map, List<File> includePaths) {
+    Options options = new Options();
+    options.setOutputStyle(compress ? OutputStyle.COMPRESSED : OutputStyle.NESTED);
+    options.setSourceMapFile(map);
+    options.getIncludePaths().addAll(includePaths);
+    return options;
   }
 
   /**
@@ -448,6 +1972,6 @@ public class JsassC {
    */
   private static void showHelp(final org.apache.commons.cli.Options options) {
     HelpFormatter formatter = new HelpFormatter();
-    formatter.printHelp("jsassc [<in> [<out>]]", options);
+    formatter.printHelp("jsassc [<in> [<out>]] | --batch <dir> <in>...", options);
   }
 }
@@ -0,0 +1,230 @@
+package io.bit3.jsassc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal json parser used to read benchmark reports.
+ *
+ * Objects are parsed into maps, arrays into lists, integral numbers into longs and all other
+ * numbers into doubles.
+ */
+class JsonParser {
+  /**
+   * The json document.
+   */
+  private final String json;
+
+  /**
+   * The current parse position.
+   */
+  private int position;
+
+  private JsonParser(String json) {
+    this.json = json;
+  }
+
+  /**
+   * Parse a json document.
+   */
+  static Object parse(String json) {
+    JsonParser parser = new JsonParser(json);
+    Object value = parser.parseValue();
+
+    parser.skipWhitespace();
+    if (parser.position < json.length()) {
+      throw parser.error("Unexpected trailing content");
+    }
+
+    return value;
+  }
+
+  private Object parseValue() {
+    skipWhitespace();
+
+    if (position >= json.length()) {
+      throw error("Unexpected end of document");
+    }
+
+    char c = json.charAt(position);
+
+    switch (c) {
+      case '{':
+        return parseObject();
+
+      case '[':
+        return parseArray();
+
+      case '"':
+        return parseString();
+
+      case 't':
+        expect("true");
+        return Boolean.TRUE;
+
+      case 'f':
+        expect("false");
+        return Boolean.FALSE;
+
+      case 'n':
+        expect("null");
+        return null;
+
+      default:
+        return parseNumber();
+    }
+  }
+
+  private Map<String, Object> parseObject() {
+    Map<String, Object> object = new LinkedHashMap<>();
+
+    expect("{");
+    skipWhitespace();
+
+    if (consume('}')) {
+      return object;
+    }
+
+    do {
+      skipWhitespace();
+      String key = parseString();
+      skipWhitespace();
+      expect(":");
+      object.put(key, parseValue());
+      skipWhitespace();
+    } while (consume(','));
+
+    expect("}");
+
+    return object;
+  }
+
+  private List<Object> parseArray() {
+    List<Object> array = new ArrayList<>();
+
+    expect("[");
+    skipWhitespace();
+
+    if (consume(']')) {
+      return array;
+    }
+
+    do {
+      array.add(parseValue());
+      skipWhitespace();
+    } while (consume(','));
+
+    expect("]");
+
+    return array;
+  }
+
+  private String parseString() {
+    StringBuilder string = new StringBuilder();
+
+    expect("\"");
+
+    while (position < json.length()) {
+      char c = json.charAt(position++);
+
+      if ('"' == c) {
+        return string.toString();
+      }
+
+      if ('\\' != c) {
+        string.append(c);
+        continue;
+      }
+
+      if (position >= json.length()) {
+        break;
+      }
+
+      char escaped = json.charAt(position++);
+
+      switch (escaped) {
+        case 'b':
+          string.append('\b');
+          break;
+
+        case 'f':
+          string.append('\f');
+          break;
+
+        case 'n':
+          string.append('\n');
+          break;
+
+        case 'r':
+          string.append('\r');
+          break;
+
+        case 't':
+          string.append('\t');
+          break;
+
+        case 'u':
+          if (position + 4 > json.length()) {
+            throw error("Invalid unicode escape");
+          }
+          string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+          position += 4;
+          break;
+
+        default:
+          string.append(escaped);
+      }
+    }
+
+    throw error("Unterminated string");
+  }
+
+  private Number parseNumber() {
+    int start = position;
+
+    while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+      position++;
+    }
+
+    String number = json.substring(start, position);
+
+    try {
+      if (number.contains(".") || number.contains("e") || number.contains("E")) {
+        return Double.parseDouble(number);
+      }
+
+      return Long.parseLong(number);
+    } catch (NumberFormatException e) {
+      throw error("Invalid number " + number);
+    }
+  }
+
+  private void skipWhitespace() {
+    while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+      position++;
+    }
+  }
+
+  private boolean consume(char c) {
+    if (position < json.length() && json.charAt(position) == c) {
+      position++;
+      return true;
+    }
+
+    return false;
+  }
+
+  private void expect(String token) {
+    if (!json.startsWith(token, position)) {
+      throw error("Expected " + token);
+    }
+
+    position += token.length();
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(String.format("%s at position %d", message, position));
+  }
+}
@@ -0,0 +1,173 @@
+package io.bit3.jsassc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram.
+ *
+ * Values are recorded in nanoseconds with a precision of three significant decimal digits. The
+ * memory footprint is constant, regardless of how many values get recorded.
+ */
+class LatencyHistogram {
+  /**
+   * Number of bits used for the linear sub buckets (2048 sub buckets, ~3 significant digits).
+   */
+  private static final int SUB_BUCKET_BITS = 11;
+
+  /**
+   * Number of linear sub buckets of the first bucket.
+   */
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Number of sub buckets of each following bucket.
+   */
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+  /**
+   * Highest value that can be tracked, higher values are counted in the last bucket.
+   */
+  static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+  /**
+   * The bucket counts.
+   */
+  private final long[] counts = new long[indexOf(HIGHEST_TRACKABLE_VALUE) + 1];
+
+  /**
+   * The number of recorded values.
+   */
+  private long totalCount;
+
+  /**
+   * The sum of all recorded values.
+   */
+  private long totalValue;
+
+  /**
+   * The exact lowest recorded value.
+   */
+  private long min = Long.MAX_VALUE;
+
+  /**
+   * The exact highest recorded value.
+   */
+  private long max = 0;
+
+  /**
+   * Record a single value.
+   */
+  void record(long value) {
+    value = Math.max(0, value);
+
+    counts[indexOf(Math.min(value, HIGHEST_TRACKABLE_VALUE))]++;
+    totalCount++;
+    totalValue += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Add all values of another histogram to this histogram.
+   */
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+
+    totalCount += other.totalCount;
+    totalValue += other.totalValue;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Return the number of recorded values.
+   */
+  long getTotalCount() {
+    return totalCount;
+  }
+
+  /**
+   * Return the sum of all recorded values.
+   */
+  long getTotalValue() {
+    return totalValue;
+  }
+
+  /**
+   * Return the exact lowest recorded value, or 0 if the histogram is empty.
+   */
+  long getMin() {
+    return 0 == totalCount ? 0 : min;
+  }
+
+  /**
+   * Return the exact highest recorded value, or 0 if the histogram is empty.
+   */
+  long getMax() {
+    return max;
+  }
+
+  /**
+   * Return the arithmetic mean of all recorded values.
+   */
+  double getMean() {
+    return 0 == totalCount ? 0 : (double) totalValue / totalCount;
+  }
+
+  /**
+   * Return the value at the given percentile (0 - 100).
+   *
+   * The returned value is the highest value that is equivalent to the bucket the percentile falls
+   * into, but never higher than the exact maximum.
+   */
+  long getValueAtPercentile(double percentile) {
+    if (0 == totalCount) {
+      return 0;
+    }
+
+    double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+    long countAtPercentile = Math.max(1, (long) Math.ceil(fraction * totalCount));
+    long cumulative = 0;
+
+    for (int i = 0; i < counts.length; i++) {
+      cumulative += counts[i];
+
+      if (cumulative >= countAtPercentile) {
+        return Math.max(getMin(), Math.min(max, highestEquivalentValue(i)));
+      }
+    }
+
+    return max;
+  }
+
+  /**
+   * Calculate the bucket index of a value.
+   */
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    // shift the value into the range [SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT)
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    int subBucket = (int) (value >> shift) - SUB_BUCKET_HALF_COUNT;
+
+    return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + subBucket;
+  }
+
+  /**
+   * Calculate the highest value that falls into the bucket with the given index.
+   */
+  private static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+    long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
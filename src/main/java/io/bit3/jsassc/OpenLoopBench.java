@@ -0,0 +1,362 @@
+package io.bit3.jsassc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import io.bit3.jsass.Output;
+
+/**
+ * Open-loop benchmark, starting compilations at a fixed rate independent of their completion.
+ *
+ * The latency of a compilation is measured from its intended start time, so a stalled compiler
+ * delays the following compilations and their queueing time is part of their latency instead of
+ * being omitted (coordinated omission).
+ */
+class OpenLoopBench {
+  /**
+   * The benchmark settings.
+   */
+  private final BenchSettings settings;
+
+  /**
+   * The factories creating the compilers, one per variant.
+   */
+  private final List<JsassC.CompileRunnerFactory> factories;
+
+  /**
+   * The input sizes of the variants.
+   */
+  private final long[] inputSizes;
+
+  /**
+   * The measurements of all worker threads.
+   */
+  private final Collection<WorkerMeasurement> measurements = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The number of worker threads that measured compilations.
+   */
+  private final AtomicInteger workers = new AtomicInteger();
+
+  /**
+   * The measurement of the current worker thread.
+   */
+  private final ThreadLocal<WorkerMeasurement> measurement = ThreadLocal.withInitial(() -> {
+    WorkerMeasurement measurement = new WorkerMeasurement(workers.incrementAndGet());
+    measurements.add(measurement);
+    return measurement;
+  });
+
+  /**
+   * The first failure of a compilation task.
+   */
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+  /**
+   * The steady state detector, or null for a fixed warmup.
+   */
+  private final SteadyStateDetector steadyState;
+
+  /**
+   * The progress meter, or null if every compilation is printed.
+   */
+  private final ProgressMeter progress;
+
+  private OpenLoopBench(BenchSettings settings, List<JsassC.CompileRunnerFactory> factories) {
+    this.settings = settings;
+    this.factories = factories;
+    this.inputSizes = factories
+        .stream()
+        .mapToLong(JsassC.CompileRunnerFactory::getInputSize)
+        .toArray();
+    this.steadyState = settings.isAutoWarmup() ? new SteadyStateDetector(settings.getMaxWarmup()) : null;
+    this.progress = settings.isQuiet() ? new ProgressMeter(settings.getIterations(), settings.getDurationNanos()) : null;
+  }
+
+  /**
+   * Run an open-loop benchmark at the rate of the settings with the given number of threads.
+   */
+  static BenchResult bench(BenchSettings settings, int threads, List<JsassC.CompileRunnerFactory> factories) {
+    return new OpenLoopBench(settings, factories).run(threads);
+  }
+
+  private BenchResult run(int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    try {
+      warmup(executor, threads);
+
+      double intervalNanos = 1e9 / settings.getRate();
+      long durationNanos = settings.getDurationNanos();
+      long start = System.nanoTime();
+
+      if (null != progress) {
+        progress.start();
+      }
+
+      for (int iteration = 0; iteration < settings.getIterations() && null == failure.get(); iteration++) {
+        long intendedStart = start + (long) (iteration * intervalNanos);
+
+        if (0 != durationNanos && intendedStart - start >= durationNanos) {
+          break;
+        }
+
+        long delay;
+        while (0 < (delay = intendedStart - System.nanoTime())) {
+          LockSupport.parkNanos(delay);
+        }
+
+        int scheduled = iteration;
+        executor.execute(() -> measure(scheduled, intendedStart));
+      }
+
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      long wallClockNanos = System.nanoTime() - start;
+
+      if (null != failure.get()) {
+        throw failure.get();
+      }
+
+      return createResult(threads, wallClockNanos);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+
+      if (null != progress) {
+        progress.stop();
+      }
+    }
+  }
+
+  /**
+   * Run the discarded warmup compilations, without rate limit.
+   *
+   * With a steady state detector, the warmup compilations run in rounds of one compilation per
+   * thread until the detector ends the warmup.
+   */
+  private void warmup(ExecutorService executor, int threads) throws InterruptedException {
+    if (null == steadyState) {
+      runWarmup(executor, threads * settings.getWarmup());
+      return;
+    }
+
+    while (!steadyState.isFinished()) {
+      runWarmup(executor, threads);
+    }
+  }
+
+  /**
+   * Run a number of discarded warmup compilations.
+   */
+  private void runWarmup(ExecutorService executor, int compilations) throws InterruptedException {
+    Collection<Callable<Object>> tasks = new LinkedList<>();
+
+    for (int i = 0; i < compilations; i++) {
+      int variant = i % factories.size();
+
+      tasks.add(() -> {
+        JsassC.CompileRunner runner = JsassC.createRunner(factories, variant);
+        runner.run();
+
+        if (null != steadyState) {
+          steadyState.record(runner.getExecutionTimeNanos());
+        }
+
+        JsassC.printWarmupOutput(runner);
+
+        return null;
+      });
+    }
+
+    executor.invokeAll(tasks).forEach(future -> {
+      try {
+        future.get();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  /**
+   * Run and measure a single scheduled compilation.
+   */
+  private void measure(int iteration, long intendedStart) {
+    try {
+      WorkerMeasurement worker = measurement.get();
+      int variant = JsassC.variantOf(iteration, factories.size());
+      long cpuTimeStart = JsassC.currentThreadCpuTime();
+
+      JsassC.CompileRunner runner = JsassC.createRunner(factories, variant);
+      runner.run();
+
+      long responseTimeNanos = System.nanoTime() - intendedStart;
+      Output output = runner.getOutput();
+
+      worker.record(runner, responseTimeNanos, cpuTimeStart);
+
+      if (null != progress) {
+        progress.record(responseTimeNanos, null == output || 0 != output.getErrorStatus());
+      }
+
+      if (settings.isRecordSamples()) {
+        worker.samples.add(
+            new BenchSample(
+                worker.worker,
+                iteration,
+                variant,
+                responseTimeNanos,
+                null == output ? -1 : output.getErrorStatus(),
+                inputSizes[variant],
+                runner.getCpuTimeNanos(),
+                runner.getAllocatedBytes(),
+                intendedStart,
+                runner.getAcquireTimeNanos(),
+                runner.getExecutionTimeNanos()
+            )
+        );
+      }
+
+      JsassC.printOutput(runner, null != progress);
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, e);
+    }
+  }
+
+  /**
+   * Merge the measurements of all worker threads into the benchmark result.
+   */
+  private BenchResult createResult(int threads, long wallClockNanos) {
+    List<WorkerMeasurement> workers = measurements
+        .stream()
+        .sorted(Comparator.comparingInt(worker -> worker.worker))
+        .collect(Collectors.toList());
+
+    long executionTimeNanos = workers
+        .stream()
+        .mapToLong(worker -> worker.executionTimeNanos)
+        .sum();
+    long cpuTimeNanos = workers.stream().anyMatch(worker -> -1 == worker.cpuTimeNanos) ? -1 : workers
+        .stream()
+        .mapToLong(worker -> worker.cpuTimeNanos)
+        .sum();
+    List<LatencyHistogram> histograms = workers
+        .stream()
+        .map(worker -> worker.histogram)
+        .collect(Collectors.toList());
+    LatencyHistogram serviceHistogram = new LatencyHistogram();
+    workers.forEach(worker -> serviceHistogram.add(worker.serviceHistogram));
+    LatencyHistogram acquireHistogram = new LatencyHistogram();
+    workers.forEach(worker -> acquireHistogram.add(worker.acquireHistogram));
+    LatencyHistogram cpuHistogram = new LatencyHistogram();
+    workers.forEach(worker -> cpuHistogram.add(worker.cpuHistogram));
+    LatencyHistogram allocationHistogram = new LatencyHistogram();
+    workers.forEach(worker -> allocationHistogram.add(worker.allocationHistogram));
+    List<BenchSample> samples = !settings.isRecordSamples() ? Collections.emptyList() : workers
+        .stream()
+        .flatMap(worker -> worker.samples.stream())
+        .sorted(Comparator.comparingInt(BenchSample::getIteration))
+        .collect(Collectors.toList());
+
+    BenchResult result = new BenchResult(
+        threads,
+        settings.getWarmup(),
+        wallClockNanos,
+        executionTimeNanos,
+        cpuTimeNanos,
+        histograms,
+        acquireHistogram,
+        samples
+    );
+    result.setTargetRate(settings.getRate());
+    result.setServiceHistogram(serviceHistogram);
+    result.setCpuHistogram(cpuHistogram);
+    result.setAllocationHistogram(allocationHistogram);
+    result.setSteadyState(steadyState);
+
+    return result;
+  }
+
+  /**
+   * The measurements of a single worker thread, only accessed by this thread until the executor
+   * terminated.
+   */
+  private static class WorkerMeasurement {
+    /**
+     * The number of this worker, starting with 1.
+     */
+    private final int worker;
+
+    /**
+     * The response times, measured from the intended start.
+     */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * The compile times, measured from the actual start.
+     */
+    private final LatencyHistogram serviceHistogram = new LatencyHistogram();
+
+    /**
+     * The compiler acquisition times.
+     */
+    private final LatencyHistogram acquireHistogram = new LatencyHistogram();
+
+    /**
+     * The compilation cpu times.
+     */
+    private final LatencyHistogram cpuHistogram = new LatencyHistogram();
+
+    /**
+     * The compilation allocated bytes.
+     */
+    private final LatencyHistogram allocationHistogram = new LatencyHistogram();
+
+    /**
+     * The raw samples.
+     */
+    private final List<BenchSample> samples = new ArrayList<>();
+
+    /**
+     * The summarized compilation time.
+     */
+    private long executionTimeNanos;
+
+    /**
+     * The cpu time consumed by the compilations, or -1 if not supported.
+     */
+    private long cpuTimeNanos;
+
+    private WorkerMeasurement(int worker) {
+      this.worker = worker;
+    }
+
+    private void record(JsassC.CompileRunner runner, long responseTimeNanos, long cpuTimeStart) {
+      executionTimeNanos += runner.getExecutionTimeNanos();
+      histogram.record(responseTimeNanos);
+      serviceHistogram.record(runner.getExecutionTimeNanos());
+      acquireHistogram.record(runner.getAcquireTimeNanos());
+      JsassC.recordResources(runner, cpuHistogram, allocationHistogram);
+
+      if (-1 == cpuTimeStart || -1 == cpuTimeNanos) {
+        cpuTimeNanos = -1;
+      } else {
+        cpuTimeNanos += JsassC.currentThreadCpuTime() - cpuTimeStart;
+      }
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package io.bit3.jsassc;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live progress of a benchmark, printed once per second by a single reporter thread.
+ *
+ * The workers record without locks: the counters are striped LongAdders and every worker thread
+ * records its latencies into an own histogram stripe, which is only written by this thread and
+ * summed up by the reporter. The stripes use a coarse log-linear bucketing with 16 sub buckets
+ * per power of two, the percentiles are precise to about 6%.
+ */
+class ProgressMeter {
+  /**
+   * Number of bits of the linear sub buckets.
+   */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /**
+   * Number of buckets of a stripe, covering all positive long values.
+   */
+  private static final int BUCKETS = 64 << SUB_BUCKET_BITS;
+
+  /**
+   * The maximum number of measured compilations.
+   */
+  private final int iterations;
+
+  /**
+   * The measurement duration, or 0 for no time limit.
+   */
+  private final long durationNanos;
+
+  /**
+   * The number of finished compilations.
+   */
+  private final LongAdder completed = new LongAdder();
+
+  /**
+   * The number of failed compilations.
+   */
+  private final LongAdder errors = new LongAdder();
+
+  /**
+   * The histogram stripes of all worker threads.
+   */
+  private final List<AtomicLongArray> stripes = new CopyOnWriteArrayList<>();
+
+  /**
+   * The histogram stripe of the current worker thread.
+   */
+  private final ThreadLocal<AtomicLongArray> stripe = ThreadLocal.withInitial(() -> {
+    AtomicLongArray stripe = new AtomicLongArray(BUCKETS);
+    stripes.add(stripe);
+    return stripe;
+  });
+
+  /**
+   * The reporter thread.
+   */
+  private ScheduledExecutorService reporter;
+
+  /**
+   * The System.nanoTime() of the measurement start.
+   */
+  private volatile long start;
+
+  /**
+   * The number of finished compilations at the previous report, only accessed by the reporter.
+   */
+  private long lastCompleted;
+
+  /**
+   * The System.nanoTime() of the previous report, only accessed by the reporter.
+   */
+  private long lastReport;
+
+  ProgressMeter(int iterations, long durationNanos) {
+    this.iterations = iterations;
+    this.durationNanos = durationNanos;
+  }
+
+  /**
+   * Start the measurement and the reporter thread.
+   */
+  void start() {
+    start = System.nanoTime();
+    lastReport = start;
+    reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "progress-meter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    reporter.scheduleAtFixedRate(this::report, 1, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stop the reporter thread.
+   */
+  void stop() {
+    if (null == reporter) {
+      return;
+    }
+
+    reporter.shutdownNow();
+
+    try {
+      reporter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Record a finished compilation.
+   */
+  void record(long nanos, boolean failed) {
+    AtomicLongArray counts = stripe.get();
+    int index = indexOf(Math.max(0, nanos));
+
+    // every stripe has a single writer, an ordered write without compare-and-set is enough
+    counts.lazySet(index, counts.get(index) + 1);
+    completed.increment();
+
+    if (failed) {
+      errors.increment();
+    }
+  }
+
+  private void report() {
+    long now = System.nanoTime();
+    long count = completed.sum();
+    double elapsedSeconds = (now - start) / 1e9;
+    double rate = (count - lastCompleted) * 1e9 / Math.max(1, now - lastReport);
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < BUCKETS; i++) {
+        long bucketCount = stripe.get(i);
+        counts[i] += bucketCount;
+        total += bucketCount;
+      }
+    }
+
+    System.out.println(
+        String.format(
+            "Progress %.0fs: %d compilations, %.2f per second, p50 %.3f / p99 %.3f milliseconds, %d errors, eta %s",
+            elapsedSeconds,
+            count,
+            rate,
+            percentile(counts, total, 50) / 1e6,
+            percentile(counts, total, 99) / 1e6,
+            errors.sum(),
+            eta(now, count)
+        )
+    );
+
+    lastCompleted = count;
+    lastReport = now;
+  }
+
+  /**
+   * Estimate the remaining time from the iterations or the duration, whichever ends first.
+   */
+  private String eta(long now, long count) {
+    double seconds = Double.POSITIVE_INFINITY;
+
+    if (Integer.MAX_VALUE != iterations && 0 < count) {
+      seconds = (iterations - count) * ((now - start) / 1e9) / count;
+    }
+
+    if (0 != durationNanos) {
+      seconds = Math.min(seconds, Math.max(0, start + durationNanos - now) / 1e9);
+    }
+
+    if (Double.isInfinite(seconds)) {
+      return "unknown";
+    }
+
+    long remaining = (long) Math.ceil(seconds);
+
+    return String.format("%d:%02d", remaining / 60, remaining % 60);
+  }
+
+  /**
+   * Return the upper bound of the bucket the percentile falls into.
+   */
+  private static long percentile(long[] counts, long total, double percentile) {
+    if (0 == total) {
+      return 0;
+    }
+
+    long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long cumulative = 0;
+
+    for (int i = 0; i < counts.length; i++) {
+      cumulative += counts[i];
+
+      if (cumulative >= countAtPercentile) {
+        return highestEquivalentValue(i);
+      }
+    }
+
+    return highestEquivalentValue(counts.length - 1);
+  }
+
+  /**
+   * Calculate the bucket index of a value.
+   */
+  private static int indexOf(long value) {
+    if (value < 1 << SUB_BUCKET_BITS) {
+      return (int) value;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /**
+   * Calculate the highest value that falls into the bucket with the given index.
+   */
+  private static long highestEquivalentValue(int index) {
+    if (index < 1 << SUB_BUCKET_BITS) {
+      return index;
+    }
+
+    int exponent = (index >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    long subBucket = index & ((1 << SUB_BUCKET_BITS) - 1);
+    int shift = exponent - SUB_BUCKET_BITS;
+
+    return (((1L << SUB_BUCKET_BITS) + subBucket + 1) << shift) - 1;
+  }
+}
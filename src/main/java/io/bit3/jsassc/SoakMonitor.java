@@ -0,0 +1,263 @@
+package io.bit3.jsassc;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Samples the process memory in fixed intervals during a soak benchmark and detects growth.
+ *
+ * The resident set size also covers the native memory allocated by libsass, which the heap
+ * statistics of the JVM cannot see. The heap is sampled as usage after the last garbage
+ * collection, so short-lived garbage does not count as growth.
+ */
+class SoakMonitor {
+  /**
+   * The process status file, containing the resident set size on linux.
+   */
+  private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+  /**
+   * The sample interval.
+   */
+  private final long intervalNanos;
+
+  /**
+   * The memory samples, only accessed by the sampler thread until stopped.
+   */
+  private final List<MemorySample> samples = new ArrayList<>();
+
+  /**
+   * The sampler thread.
+   */
+  private ScheduledExecutorService sampler;
+
+  /**
+   * The start time of the monitoring.
+   */
+  private long start;
+
+  SoakMonitor(long intervalNanos) {
+    this.intervalNanos = intervalNanos;
+  }
+
+  /**
+   * Start sampling in the background.
+   */
+  void start() {
+    start = System.nanoTime();
+    sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "soak-monitor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(this::sample, 0, intervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stop sampling, after taking a last sample.
+   */
+  void stop() {
+    sampler.shutdown();
+
+    try {
+      sampler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+
+    sample();
+  }
+
+  private void sample() {
+    MemorySample sample = new MemorySample(System.nanoTime() - start, readRss(), heapAfterCollection());
+    samples.add(sample);
+
+    System.out.println(
+        String.format(
+            "Soak sample after %d seconds: rss %s / heap after gc %.1f MiB",
+            TimeUnit.NANOSECONDS.toSeconds(sample.nanos),
+            -1 == sample.rss ? "unknown" : String.format("%.1f MiB", sample.rss / 1048576.0),
+            sample.heap / 1048576.0
+        )
+    );
+  }
+
+  /**
+   * Fit the memory growth after the warmup and print it.
+   *
+   * Growth is detected if the lower bound of the 95% confidence interval of the fitted slope
+   * exceeds the tolerated growth, so noise does not fail a soak run.
+   *
+   * @param warmupNanos          The time after the start, whose samples are ignored.
+   * @param maxGrowthBytesPerHour The tolerated growth.
+   * @return Whether the rss or the heap keeps growing.
+   */
+  boolean evaluate(long warmupNanos, double maxGrowthBytesPerHour) {
+    List<MemorySample> measured = new ArrayList<>();
+
+    for (MemorySample sample : samples) {
+      if (sample.nanos >= warmupNanos) {
+        measured.add(sample);
+      }
+    }
+
+    System.out.println("Finished soak");
+    System.out.println(
+        String.format(
+            "  %d memory samples after %d seconds warmup, tolerated growth %.1f MiB per hour",
+            measured.size(),
+            TimeUnit.NANOSECONDS.toSeconds(warmupNanos),
+            maxGrowthBytesPerHour / 1048576
+        )
+    );
+
+    if (measured.size() < 3) {
+      System.out.println("  not enough samples after the warmup to fit the growth");
+      return false;
+    }
+
+    boolean growing = false;
+
+    if (measured.stream().allMatch(sample -> -1 != sample.rss)) {
+      growing |= evaluate("rss", measured, sample -> sample.rss, maxGrowthBytesPerHour);
+    } else {
+      System.out.println("  rss is not available on this platform");
+    }
+
+    growing |= evaluate("heap", measured, sample -> sample.heap, maxGrowthBytesPerHour);
+
+    return growing;
+  }
+
+  /**
+   * Fit the growth of a single memory metric with least squares.
+   */
+  private static boolean evaluate(
+      String label,
+      List<MemorySample> samples,
+      ToLongFunction<MemorySample> metric,
+      double maxGrowthBytesPerHour
+  ) {
+    int n = samples.size();
+    double meanX = samples.stream().mapToDouble(sample -> hours(sample.nanos)).average().orElse(0);
+    double meanY = samples.stream().mapToDouble(sample -> metric.applyAsLong(sample)).average().orElse(0);
+    double sxx = 0;
+    double sxy = 0;
+
+    for (MemorySample sample : samples) {
+      double dx = hours(sample.nanos) - meanX;
+      sxx += dx * dx;
+      sxy += dx * (metric.applyAsLong(sample) - meanY);
+    }
+
+    double slope = 0 == sxx ? 0 : sxy / sxx;
+    double residuals = 0;
+
+    for (MemorySample sample : samples) {
+      double predicted = meanY + slope * (hours(sample.nanos) - meanX);
+      double residual = metric.applyAsLong(sample) - predicted;
+      residuals += residual * residual;
+    }
+
+    double standardError = 0 == sxx ? 0 : Math.sqrt(residuals / (n - 2) / sxx);
+    double lowerBound = slope - BenchStatistics.Z_95 * standardError;
+    boolean growing = lowerBound > maxGrowthBytesPerHour;
+
+    System.out.println(
+        String.format(
+            "  %-4s growth %+.1f MiB per hour, 95%% ci [%+.1f, %+.1f]%s",
+            label,
+            slope / 1048576,
+            lowerBound / 1048576,
+            (slope + BenchStatistics.Z_95 * standardError) / 1048576,
+            growing ? " GROWING" : ""
+        )
+    );
+
+    return growing;
+  }
+
+  private static double hours(long nanos) {
+    return nanos / 3.6e12;
+  }
+
+  /**
+   * Read the resident set size of this process, or -1 if not available.
+   */
+  static long readRss() {
+    try {
+      for (String line : Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8)) {
+        if (line.startsWith("VmRSS:")) {
+          String[] parts = line.substring(6).trim().split("\\s+");
+          return Long.parseLong(parts[0]) * 1024;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // fall through, the rss is not available
+    }
+
+    return -1;
+  }
+
+  /**
+   * Return the used heap after the last garbage collection, summed over all heap pools, or the
+   * currently used heap before the first garbage collection.
+   */
+  static long heapAfterCollection() {
+    boolean collected = ManagementFactory
+        .getGarbageCollectorMXBeans()
+        .stream()
+        .anyMatch(collector -> 0 < collector.getCollectionCount());
+    long used = 0;
+
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (MemoryType.HEAP != pool.getType()) {
+        continue;
+      }
+
+      MemoryUsage usage = collected ? pool.getCollectionUsage() : null;
+      used += null != usage ? usage.getUsed() : pool.getUsage().getUsed();
+    }
+
+    return used;
+  }
+
+  /**
+   * A single memory sample.
+   */
+  private static class MemorySample {
+    /**
+     * The time since the start of the monitoring.
+     */
+    private final long nanos;
+
+    /**
+     * The resident set size, or -1 if not available.
+     */
+    private final long rss;
+
+    /**
+     * The used heap after the last garbage collection.
+     */
+    private final long heap;
+
+    private MemorySample(long nanos, long rss, long heap) {
+      this.nanos = nanos;
+      this.rss = rss;
+      this.heap = heap;
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package io.bit3.jsassc;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches the source directories and recompiles the entrypoints affected by changed files.
+ *
+ * The JVM, the native library, the compilers and the worker threads stay alive between the
+ * compilations. Events are collected until no further event arrived within the debounce time,
+ * so a burst of events, like an editor writing temporary files or a git checkout, triggers a
+ * single recompilation. The import graph determines the entrypoints importing a changed file
+ * transitively, only these get recompiled. Imported files outside of the watched directories are
+ * not noticed.
+ */
+class SourceWatcher {
+  /**
+   * The compiler of the entrypoints.
+   */
+  private final BatchCompiler compiler;
+
+  /**
+   * Finds the current entrypoints, called again after files were created or deleted.
+   */
+  private final EntrypointFinder finder;
+
+  /**
+   * The import graph of the entrypoints.
+   */
+  private final ImportGraph graph;
+
+  /**
+   * The directories that are watched recursively.
+   */
+  private final Collection<Path> roots;
+
+  /**
+   * The quiet time that ends a burst of events.
+   */
+  private final long debounceNanos;
+
+  /**
+   * The watched directory of each watch key.
+   */
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+
+  /**
+   * The current entrypoints.
+   */
+  private List<BatchCompiler.Entrypoint> entrypoints;
+
+  SourceWatcher(
+      BatchCompiler compiler,
+      EntrypointFinder finder,
+      ImportGraph graph,
+      Collection<Path> roots,
+      long debounceNanos
+  ) {
+    this.compiler = compiler;
+    this.finder = finder;
+    this.graph = graph;
+    this.roots = roots;
+    this.debounceNanos = debounceNanos;
+  }
+
+  /**
+   * Compile all entrypoints, then recompile on changes until the thread gets interrupted.
+   */
+  void run() throws IOException {
+    try (
+        WatchService service = FileSystems.getDefault().newWatchService();
+    ) {
+      for (Path root : roots) {
+        register(service, root);
+      }
+
+      entrypoints = finder.find();
+      scan();
+      compiler.compile(entrypoints);
+
+      System.out.println(String.format("Watching %d directories for changes", directories.size()));
+
+      while (!Thread.currentThread().isInterrupted()) {
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = collect(service, service.take(), changed);
+        WatchKey key;
+
+        while (null != (key = service.poll(debounceNanos, TimeUnit.NANOSECONDS))) {
+          overflow |= collect(service, key, changed);
+        }
+
+        Collection<BatchCompiler.Entrypoint> affected = affected(changed, overflow);
+
+        if (!affected.isEmpty()) {
+          System.out.println(String.format("%d files changed, recompiling %d entrypoints", changed.size(), affected.size()));
+          compiler.compile(affected);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Determine the entrypoints affected by the changed files.
+   */
+  private Collection<BatchCompiler.Entrypoint> affected(Set<Path> changed, boolean overflow) throws IOException {
+    if (!overflow && changed.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    entrypoints = finder.find();
+
+    if (overflow) {
+      graph.clear();
+      scan();
+      return entrypoints;
+    }
+
+    // the importers before the update cover changed and deleted files, the importers afterwards
+    // cover files that now resolve an import
+    Set<Path> affected = graph.affected(changed);
+    graph.update(changed);
+    scan();
+    affected.addAll(graph.affected(changed));
+
+    return entrypoints
+        .stream()
+        .filter(entrypoint -> affected.contains(entrypoint.getInput()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Add the entrypoints to the import graph, which skips the known ones.
+   */
+  private void scan() throws IOException {
+    for (BatchCompiler.Entrypoint entrypoint : entrypoints) {
+      graph.add(entrypoint.getInput());
+    }
+  }
+
+  /**
+   * Collect the changed sass files of a watch key and reset the key.
+   *
+   * @return Whether events were lost.
+   */
+  private boolean collect(WatchService service, WatchKey key, Set<Path> changed) throws IOException {
+    Path directory = directories.get(key);
+    boolean overflow = false;
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (StandardWatchEventKinds.OVERFLOW == event.kind()) {
+        overflow = true;
+        continue;
+      }
+
+      Path file = directory.resolve((Path) event.context());
+
+      if (StandardWatchEventKinds.ENTRY_CREATE == event.kind() && Files.isDirectory(file)) {
+        register(service, file);
+
+        // files created before the registration did not trigger events
+        try (
+            Stream<Path> files = Files.walk(file);
+        ) {
+          files.filter(Files::isRegularFile).filter(BatchCompiler::isSass).forEach(changed::add);
+        }
+      } else if (BatchCompiler.isSass(file)) {
+        changed.add(file);
+      }
+    }
+
+    if (!key.reset()) {
+      directories.remove(key);
+    }
+
+    return overflow;
+  }
+
+  /**
+   * Watch a directory and all its sub directories.
+   */
+  private void register(WatchService service, Path root) throws IOException {
+    try (
+        Stream<Path> paths = Files.walk(root);
+    ) {
+      for (Path directory : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+        WatchKey key = directory.register(
+            service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+        directories.put(key, directory.toAbsolutePath().normalize());
+      }
+    }
+  }
+
+  /**
+   * Finds the current entrypoints.
+   */
+  interface EntrypointFinder {
+    List<BatchCompiler.Entrypoint> find() throws IOException;
+  }
+}
@@ -0,0 +1,76 @@
+package io.bit3.jsassc;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the startup phases of a single jsassc process.
+ *
+ * Every mark ends the phase since the previous mark, the first phase starts with the creation of
+ * the timer at the entry of main.
+ */
+class StartupTimer {
+  /**
+   * The wall-clock time of the main entry in milliseconds since the epoch.
+   */
+  private final long mainMillis = System.currentTimeMillis();
+
+  /**
+   * The System.nanoTime() of the last mark.
+   */
+  private long last = System.nanoTime();
+
+  /**
+   * The phase durations in order.
+   */
+  private final Map<String, Long> phases = new LinkedHashMap<>();
+
+  /**
+   * End the current phase.
+   */
+  void mark(String phase) {
+    long now = System.nanoTime();
+    phases.merge(phase, now - last, Long::sum);
+    last = now;
+  }
+
+  /**
+   * Write the phases as json document into a file.
+   */
+  void write(String file) throws IOException {
+    try (
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    ) {
+      out.println("{");
+      out.println(String.format("  \"jvmStartMillis\": %d,", ManagementFactory.getRuntimeMXBean().getStartTime()));
+      out.println(String.format("  \"mainMillis\": %d,", mainMillis));
+      out.println("  \"phases\": [");
+
+      int i = 0;
+      for (Map.Entry<String, Long> phase : phases.entrySet()) {
+        i++;
+        out.println(
+            String.format(
+                "    {\"phase\": \"%s\", \"nanos\": %d}%s",
+                phase.getKey(),
+                phase.getValue(),
+                i < phases.size() ? "," : ""
+            )
+        );
+      }
+
+      out.println("  ]");
+      out.println("}");
+
+      if (out.checkError()) {
+        throw new IOException("Failed to write the startup report");
+      }
+    }
+  }
+}
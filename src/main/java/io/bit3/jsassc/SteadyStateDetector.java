@@ -0,0 +1,190 @@
+package io.bit3.jsassc;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Detects the end of the warmup from a rolling window of compile latencies and the JIT activity.
+ *
+ * The steady state is reached, once the mean and the coefficient of variation stabilized between
+ * both halves of the window, i.e. changed less than the tolerance, and the JIT compiler threads
+ * were busy for less than the tolerance of the window time. Warmup compilations of all worker
+ * threads are recorded into the same window.
+ */
+class SteadyStateDetector {
+  /**
+   * The number of latencies in the rolling window.
+   */
+  static final int WINDOW = 50;
+
+  /**
+   * The tolerated change of the latency statistics and the tolerated JIT activity.
+   */
+  static final double TOLERANCE = 0.1;
+
+  /**
+   * The maximum number of warmup compilations over all threads.
+   */
+  private final int maxIterations;
+
+  /**
+   * The JIT compiler, or null if its compilation time is not available.
+   */
+  private final CompilationMXBean jit;
+
+  /**
+   * The rolling window of latencies.
+   */
+  private final long[] latencies = new long[WINDOW];
+
+  /**
+   * The System.nanoTime() of each window entry.
+   */
+  private final long[] times = new long[WINDOW];
+
+  /**
+   * The total JIT compilation time in milliseconds at each window entry.
+   */
+  private final long[] jitTimes = new long[WINDOW];
+
+  /**
+   * The number of recorded warmup compilations.
+   */
+  private int iterations;
+
+  /**
+   * The System.nanoTime() of the first warmup compilation.
+   */
+  private long start;
+
+  /**
+   * The warmup time until the steady state.
+   */
+  private long nanos;
+
+  /**
+   * Whether the warmup has ended.
+   */
+  private boolean finished;
+
+  /**
+   * Whether the steady state was detected, instead of hitting the maximum.
+   */
+  private boolean steady;
+
+  SteadyStateDetector(int maxIterations) {
+    CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+
+    this.maxIterations = maxIterations;
+    this.jit = null != compilation && compilation.isCompilationTimeMonitoringSupported() ? compilation : null;
+  }
+
+  /**
+   * Record the latency of a warmup compilation.
+   */
+  synchronized void record(long latencyNanos) {
+    if (finished) {
+      return;
+    }
+
+    long now = System.nanoTime();
+    int index = iterations % WINDOW;
+
+    if (0 == iterations) {
+      start = now - latencyNanos;
+    }
+
+    latencies[index] = latencyNanos;
+    times[index] = now;
+    jitTimes[index] = null == jit ? 0 : jit.getTotalCompilationTime();
+    iterations++;
+
+    if (iterations >= WINDOW && isStable()) {
+      finish(true);
+    } else if (iterations >= maxIterations) {
+      finish(false);
+    }
+  }
+
+  /**
+   * Return whether the warmup has ended.
+   */
+  synchronized boolean isFinished() {
+    return finished;
+  }
+
+  synchronized int getIterations() {
+    return iterations;
+  }
+
+  synchronized long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * Return whether the steady state was detected, false if the warmup hit the maximum.
+   */
+  synchronized boolean isSteady() {
+    return steady;
+  }
+
+  private void finish(boolean steady) {
+    this.finished = true;
+    this.steady = steady;
+    this.nanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Check the window, which is completely filled.
+   */
+  private boolean isStable() {
+    int half = WINDOW / 2;
+    double[] first = statistics(0, half);
+    double[] second = statistics(half, WINDOW);
+
+    if (0 == first[0]) {
+      return false;
+    }
+
+    double drift = Math.abs(second[0] - first[0]) / first[0];
+    double variationChange = Math.abs(second[1] - first[1]);
+
+    if (drift > TOLERANCE || variationChange > TOLERANCE) {
+      return false;
+    }
+
+    if (null == jit) {
+      return true;
+    }
+
+    int oldest = iterations % WINDOW;
+    int newest = (iterations - 1) % WINDOW;
+    double windowMillis = (times[newest] - times[oldest]) / 1e6;
+    long jitMillis = jitTimes[newest] - jitTimes[oldest];
+
+    return jitMillis <= TOLERANCE * windowMillis;
+  }
+
+  /**
+   * Return the mean and the coefficient of variation of a range of the window, counted from the
+   * oldest entry.
+   */
+  private double[] statistics(int from, int to) {
+    int n = to - from;
+    double mean = 0;
+
+    for (int i = from; i < to; i++) {
+      mean += latencies[(iterations + i) % WINDOW];
+    }
+
+    mean /= n;
+
+    double variance = 0;
+    for (int i = from; i < to; i++) {
+      double deviation = latencies[(iterations + i) % WINDOW] - mean;
+      variance += deviation * deviation;
+    }
+
+    return new double[]{mean, 0 == mean ? 0 : Math.sqrt(variance / (n - 1)) / mean};
+  }
+}
@@ -0,0 +1,62 @@
+package io.bit3.jsassc;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class BenchBaselineTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void loadsAReport() throws IOException {
+    assertNotNull(
+        BenchBaseline.load(
+            report("{\"results\": [{\"threads\": 1, \"samples\": [{\"worker\": 1, \"nanos\": 1000, \"status\": 0}]}]}")
+        )
+    );
+  }
+
+  @Test
+  public void rejectsMalformedReports() throws IOException {
+    for (String json : new String[]{
+        "",
+        "not json",
+        "{\"results\": [",
+        "[]",
+        "{}",
+        "{\"results\": {}}",
+        "{\"results\": []}",
+        "{\"results\": [1]}",
+        "{\"results\": [null]}",
+        "{\"results\": [{\"threads\": 1, \"samples\": [1000]}]}",
+        "{\"results\": [{\"threads\": 1, \"samples\": [{\"nanos\": 1000}, null]}]}"
+    }) {
+      try {
+        BenchBaseline.load(report(json));
+        fail("Loaded malformed baseline " + json);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsMissingReports() throws IOException {
+    BenchBaseline.load(new File(folder.getRoot(), "missing.json"));
+  }
+
+  private File report(String json) throws IOException {
+    File file = folder.newFile();
+    FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+    return file;
+  }
+}
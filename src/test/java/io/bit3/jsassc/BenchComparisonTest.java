@@ -0,0 +1,64 @@
+package io.bit3.jsassc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BenchComparisonTest {
+  @Test
+  public void reportsThePercentileChange() {
+    BenchComparison comparison = new BenchComparison(samples(100, 1000), samples(100, 1100));
+
+    assertTrue(comparison.isComparable());
+    assertEquals(10, comparison.getChange(50), 1e-9);
+    assertEquals(10, comparison.getChange(99), 1e-9);
+  }
+
+  @Test
+  public void sortsTheSamples() {
+    BenchComparison comparison = new BenchComparison(new long[]{300, 100, 200}, new long[]{600, 200, 400});
+
+    assertEquals(100, comparison.getChange(50), 1e-9);
+  }
+
+  @Test
+  public void separatesShiftedDistributions() {
+    BenchComparison comparison = new BenchComparison(samples(1000, 100), samples(1000, 200));
+
+    assertTrue(comparison.isHigher(50));
+    assertTrue(comparison.getTest().pGreater < 0.001);
+  }
+
+  @Test
+  public void doesNotSeparateEqualDistributions() {
+    BenchComparison comparison = new BenchComparison(samples(1000, 100), samples(1000, 100));
+
+    assertFalse(comparison.isHigher(50));
+    assertFalse(comparison.isHigher(99));
+    assertEquals(0, comparison.getChange(50), 0);
+    assertTrue(comparison.getTest().pGreater > 0.4);
+  }
+
+  @Test
+  public void emptySetsAreNotComparable() {
+    BenchComparison comparison = new BenchComparison(new long[0], samples(10, 100));
+
+    assertFalse(comparison.isComparable());
+    assertEquals(0, comparison.getChange(50), 0);
+  }
+
+  /**
+   * Return n evenly spread samples from offset to 2 offset.
+   */
+  private static long[] samples(int n, long offset) {
+    long[] samples = new long[n];
+
+    for (int i = 0; i < n; i++) {
+      samples[i] = offset + offset * i / n;
+    }
+
+    return samples;
+  }
+}
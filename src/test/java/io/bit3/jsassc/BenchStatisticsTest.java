@@ -0,0 +1,152 @@
+package io.bit3.jsassc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BenchStatisticsTest {
+  @Test
+  public void uCountsThePairsWithALargerSecondSample() {
+    BenchStatistics.MannWhitney test = BenchStatistics.mannWhitney(
+        new long[]{19, 22, 16, 29, 24},
+        new long[]{20, 11, 17, 12}
+    );
+
+    assertEquals(3, test.u, 0);
+    assertEquals(3.0 / 20, test.superiority, 1e-12);
+    assertTrue(test.z < 0);
+  }
+
+  @Test
+  public void tiesCountHalf() {
+    BenchStatistics.MannWhitney test = BenchStatistics.mannWhitney(new long[]{1, 2}, new long[]{2, 3});
+
+    assertEquals(3.5, test.u, 0);
+  }
+
+  @Test
+  public void identicalSamplesAreNotSignificant() {
+    BenchStatistics.MannWhitney test = BenchStatistics.mannWhitney(new long[]{5, 5, 5}, new long[]{5, 5, 5});
+
+    assertEquals(4.5, test.u, 0);
+    assertEquals(0, test.z, 0);
+    assertEquals(1, test.pTwoSided, 1e-6);
+  }
+
+  @Test
+  public void emptySamplesAreNotSignificant() {
+    BenchStatistics.MannWhitney test = BenchStatistics.mannWhitney(new long[0], new long[]{1, 2});
+
+    assertEquals(0.5, test.superiority, 0);
+    assertEquals(1, test.pTwoSided, 1e-6);
+  }
+
+  @Test
+  public void pValueMatchesTheCriticalValueTable() {
+    // the critical value of U for 20 and 20 samples at the two-sided 0.05 level is 127
+    assertTrue(BenchStatistics.mannWhitney(hundreds(20), above(127)).pTwoSided < 0.05);
+    assertTrue(BenchStatistics.mannWhitney(hundreds(20), above(128)).pTwoSided > 0.05);
+  }
+
+  @Test
+  public void oneSidedPValueTestsTheSecondSamplesForLargerValues() {
+    BenchStatistics.MannWhitney slower = BenchStatistics.mannWhitney(hundreds(20), above(400 - 127));
+
+    assertTrue(slower.z > 0);
+    assertTrue(slower.pGreater < 0.025);
+    assertEquals(slower.pTwoSided / 2, slower.pGreater, 1e-9);
+  }
+
+  @Test
+  public void uDoesNotOverflowWithLargeSampleSets() {
+    long[] first = new long[70000];
+    long[] second = new long[70000];
+    Arrays.fill(second, 1);
+
+    BenchStatistics.MannWhitney test = BenchStatistics.mannWhitney(first, second);
+
+    assertEquals(70000.0 * 70000, test.u, 0);
+    assertEquals(1, test.superiority, 0);
+    assertTrue(test.pGreater < 1e-9);
+  }
+
+  @Test
+  public void percentileUsesTheNearestRank() {
+    long[] sorted = range(100);
+
+    assertEquals(50, BenchStatistics.percentile(sorted, 50));
+    assertEquals(99, BenchStatistics.percentile(sorted, 99));
+    assertEquals(100, BenchStatistics.percentile(sorted, 100));
+    assertEquals(1, BenchStatistics.percentile(sorted, 0));
+    assertEquals(0, BenchStatistics.percentile(new long[0], 50));
+  }
+
+  @Test
+  public void percentileIntervalUsesOrderStatistics() {
+    // n q -/+ z sqrt(n q (1 - q)) = 50 -/+ 9.8 selects the ranks 40 and 60
+    assertArrayEquals(
+        new long[]{40, 60},
+        BenchStatistics.percentileInterval(range(100), 50, BenchStatistics.Z_95)
+    );
+  }
+
+  @Test
+  public void percentileIntervalIsClampedToTheSamples() {
+    assertArrayEquals(new long[]{1, 3}, BenchStatistics.percentileInterval(range(3), 50, BenchStatistics.Z_95));
+    assertArrayEquals(new long[]{97, 100}, BenchStatistics.percentileInterval(range(100), 99, BenchStatistics.Z_95));
+    assertArrayEquals(new long[]{0, 0}, BenchStatistics.percentileInterval(new long[0], 50, BenchStatistics.Z_95));
+  }
+
+  @Test
+  public void normalCdfMatchesTheStandardNormalTable() {
+    assertEquals(0.5, BenchStatistics.normalCdf(0), 1e-6);
+    assertEquals(0.975, BenchStatistics.normalCdf(BenchStatistics.Z_95), 1e-6);
+    assertEquals(0.841345, BenchStatistics.normalCdf(1), 1e-6);
+    assertEquals(0.158655, BenchStatistics.normalCdf(-1), 1e-6);
+  }
+
+  /**
+   * Return the samples 1 to n.
+   */
+  private static long[] range(int n) {
+    long[] samples = new long[n];
+
+    for (int i = 0; i < n; i++) {
+      samples[i] = i + 1;
+    }
+
+    return samples;
+  }
+
+  /**
+   * Return the samples 0, 100, 200, ...
+   */
+  private static long[] hundreds(int n) {
+    long[] samples = new long[n];
+
+    for (int i = 0; i < n; i++) {
+      samples[i] = i * 100L;
+    }
+
+    return samples;
+  }
+
+  /**
+   * Return 20 distinct samples, that are larger than u of the 20 samples of hundreds(20) in total.
+   */
+  private static long[] above(int u) {
+    long[] samples = new long[20];
+
+    for (int i = 0; i < 20; i++) {
+      // a sample of 100 k + 1 + i is larger than k + 1 samples, without ties
+      int larger = u / 20 + (i < u % 20 ? 1 : 0);
+      samples[i] = 100L * (larger - 1) + 1 + i;
+    }
+
+    return samples;
+  }
+}
@@ -0,0 +1,89 @@
+package io.bit3.jsassc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ImportGraphTest {
+  @Test
+  public void parsesQuotedImports() {
+    assertEquals(
+        Arrays.asList("a", "b/c", "d.scss"),
+        scss("@import \"a\";\n@import 'b/c', \"d.scss\";")
+    );
+  }
+
+  @Test
+  public void keepsPlainCssImports() {
+    // the resolver ignores them, as they stay plain css imports
+    assertEquals(Arrays.asList("plain.css", "http://example.org/a"), scss("@import \"plain.css\", \"http://example.org/a\";"));
+  }
+
+  @Test
+  public void skipsComments() {
+    assertEquals(
+        Collections.singletonList("real"),
+        scss("// @import \"line\";\n/* @import \"block\";\n @import \"block2\"; */\n@import \"real\";")
+    );
+  }
+
+  @Test
+  public void skipsStrings() {
+    assertEquals(
+        Collections.singletonList("real"),
+        scss(".a { content: \"@import \\\"x\\\"\"; }\n.b { content: '@import \"y\"'; }\n@import \"real\";")
+    );
+  }
+
+  @Test
+  public void skipsUrlImports() {
+    assertEquals(Collections.emptyList(), scss("@import url(foo.css);\n@import url(\"bar.css\");"));
+    assertEquals(Collections.emptyList(), scss(".a { background: url(\"@import 'x'\"); }"));
+  }
+
+  @Test
+  public void skipsOtherDirectives() {
+    assertEquals(Collections.emptyList(), scss("@imported \"a\";\n@import-once \"b\";"));
+  }
+
+  @Test
+  public void ignoresUnquotedScssImports() {
+    assertEquals(Collections.emptyList(), scss("@import a;"));
+  }
+
+  @Test
+  public void parsesUnquotedIndentedImports() {
+    assertEquals(Arrays.asList("sub/part", "other", "quoted"), sass("@import sub/part, other\n@import \"quoted\"\n"));
+  }
+
+  @Test
+  public void parsesIndentedImportsAtTheEndOfTheSource() {
+    assertEquals(Collections.singletonList("last"), sass(".a\n  color: red\n@import last"));
+  }
+
+  @Test
+  public void keepsInterpolatedImports() {
+    // the resolver can not resolve them without compiling
+    assertEquals(Collections.singletonList("theme-#{$name}"), scss("@import \"theme-#{$name}\";"));
+  }
+
+  @Test
+  public void toleratesUnterminatedSources() {
+    assertEquals(Collections.emptyList(), scss("/* @import \"a\";"));
+    assertEquals(Collections.emptyList(), scss("// @import \"a\";"));
+    assertEquals(Collections.emptyList(), scss("@import"));
+    assertEquals(Collections.emptyList(), scss("@import "));
+  }
+
+  private static List<String> scss(String source) {
+    return ImportGraph.parse(source, false);
+  }
+
+  private static List<String> sass(String source) {
+    return ImportGraph.parse(source, true);
+  }
+}
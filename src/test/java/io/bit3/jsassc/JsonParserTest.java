@@ -0,0 +1,74 @@
+package io.bit3.jsassc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class JsonParserTest {
+  @Test
+  @SuppressWarnings("unchecked")
+  public void parsesObjectsAndArrays() {
+    Map<String, Object> document = (Map<String, Object>) JsonParser.parse(
+        " {\"results\": [{\"threads\": 2, \"throughput\": 1.5e2}], \"empty\": {}, \"none\": [], \"flag\": true, \"missing\": null} "
+    );
+
+    List<Object> results = (List<Object>) document.get("results");
+    Map<String, Object> result = (Map<String, Object>) results.get(0);
+
+    assertEquals(Arrays.asList("results", "empty", "none", "flag", "missing"), Arrays.asList(document.keySet().toArray()));
+    assertEquals(2L, result.get("threads"));
+    assertEquals(150.0, result.get("throughput"));
+    assertEquals(Collections.emptyMap(), document.get("empty"));
+    assertEquals(Collections.emptyList(), document.get("none"));
+    assertEquals(Boolean.TRUE, document.get("flag"));
+    assertNull(document.get("missing"));
+  }
+
+  @Test
+  public void parsesNumbers() {
+    assertEquals(-12L, JsonParser.parse("-12"));
+    assertEquals(9007199254740993L, JsonParser.parse("9007199254740993"));
+    assertEquals(0.25, JsonParser.parse("0.25"));
+    assertEquals(-1e-3, JsonParser.parse("-1E-3"));
+  }
+
+  @Test
+  public void parsesStringEscapes() {
+    assertEquals("a\"b\\c/d\n\t\u00e9", JsonParser.parse("\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\""));
+  }
+
+  @Test
+  public void rejectsMalformedDocuments() {
+    for (String json : new String[]{
+        "",
+        "   ",
+        "{",
+        "{\"a\": 1",
+        "{\"a\" 1}",
+        "{a: 1}",
+        "[1, 2",
+        "[1 2]",
+        "\"unterminated",
+        "\"\\u12\"",
+        "tru",
+        "1.2.3",
+        "-",
+        "{} {}",
+        "[] trailing"
+    }) {
+      try {
+        JsonParser.parse(json);
+        fail("Parsed malformed json " + json);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}